@@ -0,0 +1,56 @@
+package dev.thatredox.chunky.animate.animation;
+
+import org.openjdk.jmh.annotations.*;
+import se.llbit.chunky.renderer.scene.Scene;
+import se.llbit.json.JsonObject;
+
+import java.util.OptionalDouble;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Building frames from a scene, scene JSON and field providers, and writing them back to JSON.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnimationFrameBenchmark {
+    private Scene scene;
+    private AnimationFrame base;
+    private AnimationFrame frame;
+    private JsonObject json;
+    private Function<String, OptionalDouble> fieldProvider;
+
+    @Setup
+    public void setup() {
+        // A default scene needs no world or resource pack, so it can be built headlessly
+        scene = new Scene();
+        base = BenchmarkData.randomFrame(1);
+        frame = BenchmarkData.randomFrame(2);
+        json = BenchmarkData.sceneJson(frame, 1024, 2);
+        fieldProvider = name -> name.startsWith("camera") ? OptionalDouble.of(name.length()) : OptionalDouble.empty();
+    }
+
+    @Benchmark
+    public AnimationFrame fromScene() {
+        return new AnimationFrame(scene);
+    }
+
+    @Benchmark
+    public AnimationFrame fromJson() {
+        return new AnimationFrame(json, base);
+    }
+
+    @Benchmark
+    public AnimationFrame fromFieldProvider() {
+        return new AnimationFrame(fieldProvider, base);
+    }
+
+    @Benchmark
+    public JsonObject toJson() {
+        return frame.toJson();
+    }
+}
@@ -0,0 +1,152 @@
+package dev.thatredox.chunky.animate.animation;
+
+import it.unimi.dsi.fastutil.doubles.Double2ObjectRBTreeMap;
+import it.unimi.dsi.fastutil.doubles.Double2ObjectSortedMap;
+import se.llbit.json.Json;
+import se.llbit.json.JsonArray;
+import se.llbit.json.JsonObject;
+import se.llbit.json.PrettyPrinter;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.OptionalDouble;
+import java.util.Random;
+
+/**
+ * Synthetic inputs for the benchmarks. Everything is generated without a Chunky installation or a Minecraft world.
+ */
+public final class BenchmarkData {
+    private BenchmarkData() {}
+
+    /**
+     * A frame with every field set to a random value, built without a scene.
+     */
+    public static AnimationFrame randomFrame(long seed) {
+        Random random = new Random(seed);
+        return new AnimationFrame(name -> OptionalDouble.of(random.nextDouble()), new AnimationFrame());
+    }
+
+    /**
+     * Keyframes one second apart with every interpolatable field set.
+     */
+    public static Double2ObjectSortedMap<AnimationKeyFrame> keyframes(int count, long seed) {
+        Random random = new Random(seed);
+        Double2ObjectSortedMap<AnimationKeyFrame> keyframes = new Double2ObjectRBTreeMap<>();
+        for (int i = 0; i < count; i++) {
+            AnimationKeyFrame keyframe = new AnimationKeyFrame("Keyframe " + i);
+            for (FrameSchema.DoubleAccessor field : FrameSchema.interpolatable()) {
+                keyframe.interpFields.put(field.name, random.nextDouble() * 100);
+            }
+            keyframes.put(i, keyframe);
+        }
+        return keyframes;
+    }
+
+    /**
+     * A scene JSON shaped like a Chunky scene file. The animated fields are set from {@code frame} and are surrounded
+     * by the render settings, chunk list, entities and materials a real scene carries.
+     *
+     * @param chunks Number of entries in the chunk list.
+     */
+    public static JsonObject sceneJson(AnimationFrame frame, int chunks, long seed) {
+        Random random = new Random(seed);
+        JsonObject json = frame.toJson();
+        json.add("sdfVersion", 9);
+        json.add("name", "benchmark");
+        json.add("width", 1920);
+        json.add("height", 1080);
+        json.add("spp", 0);
+        json.add("sppTarget", 1024);
+        json.add("rayDepth", 5);
+        json.add("pathTrace", true);
+        json.add("dumpFrequency", 500);
+        json.add("saveSnapshots", false);
+        json.add("emittersEnabled", true);
+        json.add("emitterIntensity", 13.0);
+        json.add("stillWater", false);
+        json.add("waterOpacity", 0.42);
+        json.add("waterVisibility", 9.0);
+        json.add("postprocess", "GAMMA");
+
+        JsonObject camera = AnimationFrame.resolveJsonField(json, "camera").asObject();
+        camera.add("name", "camera 1");
+        camera.add("projectionMode", "PINHOLE");
+        camera.add("shift", new JsonObject());
+
+        JsonArray chunkList = new JsonArray();
+        for (int i = 0; i < chunks; i++) {
+            JsonArray chunk = new JsonArray();
+            chunk.add(Json.of(i % 64 - 32));
+            chunk.add(Json.of(i / 64 - 32));
+            chunkList.add(chunk);
+        }
+        json.add("chunkList", chunkList);
+
+        JsonArray entities = new JsonArray();
+        for (int i = 0; i < chunks / 4; i++) {
+            JsonObject entity = new JsonObject();
+            entity.add("kind", "painting");
+            JsonObject position = new JsonObject();
+            position.add("x", random.nextDouble() * 512);
+            position.add("y", random.nextDouble() * 256);
+            position.add("z", random.nextDouble() * 512);
+            entity.add("position", position);
+            entity.add("art", "Kebab");
+            entity.add("angle", 90.0);
+            entities.add(entity);
+        }
+        json.add("entities", entities);
+
+        JsonObject materials = new JsonObject();
+        for (int i = 0; i < 64; i++) {
+            JsonObject material = new JsonObject();
+            material.add("emittance", random.nextDouble());
+            material.add("specular", random.nextDouble());
+            material.add("roughness", random.nextDouble());
+            material.add("ior", 1.0 + random.nextDouble());
+            materials.add("minecraft:block_" + i, material);
+        }
+        json.add("materials", materials);
+        return json;
+    }
+
+    /**
+     * Pretty print JSON the way Chunky writes scene files.
+     */
+    public static byte[] toBytes(JsonObject json) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (PrettyPrinter pp = new PrettyPrinter("  ", new PrintStream(bytes))) {
+            json.prettyPrint(pp);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Write a folder of scene files with the camera moving a little every frame.
+     *
+     * @return The folder. Delete it with {@link #deleteFolder(File)}.
+     */
+    public static File sceneFolder(int frames, int chunks) throws IOException {
+        File folder = Files.createTempDirectory("chunky-animate-bench").toFile();
+        AnimationFrame frame = randomFrame(frames);
+        for (int i = 0; i < frames; i++) {
+            frame.cameraPositionX += 0.25;
+            frame.cameraOrientationYaw += 0.01;
+            File file = new File(folder, String.format("frame%05d.json", i));
+            Files.write(file.toPath(), toBytes(sceneJson(frame, chunks, i)));
+        }
+        return folder;
+    }
+
+    public static void deleteFolder(File folder) {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+}
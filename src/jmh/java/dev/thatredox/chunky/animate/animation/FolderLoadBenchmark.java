@@ -0,0 +1,52 @@
+package dev.thatredox.chunky.animate.animation;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a folder of scene files, as done by {@link AnimationUtils#loadFramesFromFolder}. The base frame normally
+ * comes from the loaded scene and is generated instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FolderLoadBenchmark {
+    @Param({"256"})
+    public int frames;
+
+    /**
+     * Size of the chunk list in each scene file. Larger scenes spend more time parsing fields which are not animated.
+     */
+    @Param({"0", "4096"})
+    public int chunks;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private File folder;
+    private AnimationFrame base;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        folder = BenchmarkData.sceneFolder(frames, chunks);
+        base = BenchmarkData.randomFrame(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkData.deleteFolder(folder);
+    }
+
+    @Benchmark
+    public FrameTable loadFolder() {
+        FrameTable table = new FrameTable();
+        new FolderFrameLoader(folder, base, table, threads).run();
+        return table;
+    }
+}
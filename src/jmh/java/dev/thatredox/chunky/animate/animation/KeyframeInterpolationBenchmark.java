@@ -0,0 +1,55 @@
+package dev.thatredox.chunky.animate.animation;
+
+import it.unimi.dsi.fastutil.doubles.Double2ObjectSortedMap;
+import org.apache.commons.math3.analysis.polynomials.PolynomialSplineFunction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spline fitting and per frame spline evaluation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyframeInterpolationBenchmark {
+    private static final double FRAMERATE = 60;
+
+    @Param({"4", "16", "64", "256"})
+    public int keyframeCount;
+
+    private Double2ObjectSortedMap<AnimationKeyFrame> keyframes;
+    private Map<String, PolynomialSplineFunction> splines;
+    private AnimationFrame base;
+    private double endTime;
+    private int numFrames;
+    private int frame;
+
+    @Setup
+    public void setup() {
+        keyframes = BenchmarkData.keyframes(keyframeCount, 42);
+        splines = AnimationUtils.interpolateKeyframes(keyframes, (progress, total) -> true);
+        base = BenchmarkData.randomFrame(42);
+        endTime = keyframes.lastDoubleKey();
+        numFrames = (int) (endTime * FRAMERATE) + 1;
+    }
+
+    @Benchmark
+    public Map<String, PolynomialSplineFunction> interpolateKeyframes() {
+        return AnimationUtils.interpolateKeyframes(keyframes, (progress, total) -> true);
+    }
+
+    /**
+     * One frame of {@link AnimationUtils#applyInterpolation}, walking through the animation so every spline segment
+     * is visited.
+     */
+    @Benchmark
+    public AnimationFrame applyInterpolation() {
+        frame = frame + 1 < numFrames ? frame + 1 : 0;
+        return AnimationUtils.applyInterpolation(splines, frame / FRAMERATE, endTime, base);
+    }
+}
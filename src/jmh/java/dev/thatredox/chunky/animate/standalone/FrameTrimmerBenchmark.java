@@ -0,0 +1,49 @@
+package dev.thatredox.chunky.animate.standalone;
+
+import dev.thatredox.chunky.animate.animation.BenchmarkData;
+import org.openjdk.jmh.annotations.*;
+import se.llbit.json.JsonObject;
+import se.llbit.json.JsonParser;
+import se.llbit.json.JsonValue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stripping a scene file down to the animated fields.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrameTrimmerBenchmark {
+    @Param({"0", "1024", "16384"})
+    public int chunks;
+
+    private byte[] scene;
+    private JsonPathFilter filter;
+
+    @Setup
+    public void setup() {
+        scene = BenchmarkData.toBytes(BenchmarkData.sceneJson(BenchmarkData.randomFrame(7), chunks, 7));
+        filter = new JsonPathFilter(FrameTrimmer.knownPaths());
+    }
+
+    @Benchmark
+    public JsonObject filter() throws IOException {
+        return filter.filter(new ByteArrayInputStream(scene));
+    }
+
+    /**
+     * Parsing the whole file, for comparison.
+     */
+    @Benchmark
+    public JsonValue parse() throws IOException, JsonParser.SyntaxError {
+        try (JsonParser parser = new JsonParser(new ByteArrayInputStream(scene))) {
+            return parser.parse();
+        }
+    }
+}
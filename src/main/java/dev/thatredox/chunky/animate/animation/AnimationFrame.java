@@ -4,6 +4,7 @@ import dev.thatredox.chunky.animate.reflection.BooleanJsonField;
 import dev.thatredox.chunky.animate.reflection.DoubleField;
 import dev.thatredox.chunky.animate.reflection.DoubleJsonField;
 import dev.thatredox.chunky.animate.reflection.DoubleSceneField;
+import dev.thatredox.chunky.animate.util.AnimationEvents;
 import se.llbit.chunky.renderer.scene.Scene;
 import se.llbit.json.Json;
 import se.llbit.json.JsonObject;
@@ -155,62 +156,65 @@ public class AnimationFrame {
     @DoubleField("Animation time")
     public double animationTime;
 
+    AnimationFrame() {
+    }
+
     public AnimationFrame(Scene scene) {
         this.waterWorldEnabled = scene.isWaterPlaneEnabled();
         this.sunDraw = scene.sun().drawTexture();
         this.cloudsEnabled = scene.sky().cloudsEnabled();
 
-        for (Field field : this.getClass().getDeclaredFields()) {
-            try {
-                DoubleSceneField doubleField = field.getAnnotation(DoubleSceneField.class);
-                if (doubleField != null) {
-                    field.set(this, resolveSceneDoubleField(scene, doubleField.value()));
-                    continue;
-                }
-            } catch (IllegalAccessException e) {
-                // Ignored
+        for (FrameSchema.DoubleAccessor field : FrameSchema.doubles()) {
+            if (field.hasScenePath()) {
+                field.set(this, field.fromScene(scene));
             }
         }
-
     }
 
     public AnimationFrame(JsonObject json, AnimationFrame prev) {
         this(prev);
+        this.readJson(json);
+    }
 
-        for (Field field : this.getClass().getDeclaredFields()) {
-            try {
-                BooleanJsonField booleanField = field.getAnnotation(BooleanJsonField.class);
-                if (booleanField != null) {
-                    field.set(this, resolveJsonField(json, booleanField.value()).boolValue((Boolean) field.get(this)));
-                    continue;
-                }
-
-                DoubleJsonField doubleField = field.getAnnotation(DoubleJsonField.class);
-                if (doubleField != null) {
-                    field.set(this, resolveJsonField(json, doubleField.value()).doubleValue((Double) field.get(this)));
-                    continue;
-                }
-            } catch (IllegalAccessException e) {
-                // Ignored
+    /**
+     * Overwrite the fields present in a scene JSON. Fields missing from the JSON are left unchanged.
+     */
+    public void readJson(JsonObject json) {
+        for (FrameSchema.BooleanAccessor field : FrameSchema.booleans()) {
+            if (field.hasJsonPath()) {
+                field.set(this, field.fromJson(json, field.get(this)));
+            }
+        }
+        for (FrameSchema.DoubleAccessor field : FrameSchema.doubles()) {
+            if (field.hasJsonPath()) {
+                field.set(this, field.fromJson(json, field.get(this)));
             }
         }
     }
 
     public static JsonValue resolveJsonField(JsonObject json, String field) {
+        return resolveJsonField(json, field.split("\\."));
+    }
+
+    public static JsonValue resolveJsonField(JsonObject json, String[] levels) {
         JsonValue value = json;
-        for (String level : field.split("\\.")) {
+        for (String level : levels) {
             value = value.asObject().get(level);
         }
         return value;
     }
 
     public static void writeJsonField(JsonValue value, JsonObject json, String field) {
+        writeJsonField(value, json, field.split("\\."));
+    }
+
+    public static void writeJsonField(JsonValue value, JsonObject json, String[] levels) {
         JsonObject obj = json;
-        String[] levels = field.split("\\.");
         for (int i = 0; i < levels.length-1; i++) {
             String level = levels[i];
-            if (!obj.get(level).isUnknown()) {
-                obj = json.get(level).asObject();
+            JsonValue child = obj.get(level);
+            if (!child.isUnknown()) {
+                obj = child.asObject();
             } else {
                 JsonObject newObj = new JsonObject();
                 obj.set(level, newObj);
@@ -235,61 +239,88 @@ public class AnimationFrame {
         }
     }
 
-    @SuppressWarnings("CopyConstructorMissesField")
     public AnimationFrame(AnimationFrame prev) {
-        for (Field field : this.getClass().getDeclaredFields()) {
-            try {
-                field.set(this, field.get(this));
-            } catch (IllegalAccessException e) {
-                // Ignored
-            }
-        }
+        this.set(prev);
     }
 
     public AnimationFrame(Function<String, OptionalDouble> fieldProvider, AnimationFrame prev) {
-        Field[] fields = this.getClass().getDeclaredFields();
-        for (Field field : fields) {
-            try {
-                Object prevValue = field.get(prev);
-                field.set(this, prevValue);
-
-                Object value = field.get(this);
-                if (value instanceof Double && prevValue instanceof Double) {
-                    OptionalDouble result = fieldProvider.apply(field.getName());
-                    if (result.isPresent()) {
-                        field.set(this, result.getAsDouble());
-                    }
-                }
-            } catch (IllegalAccessException e) {
-                // Ignored
+        this(prev);
+
+        for (FrameSchema.DoubleAccessor field : FrameSchema.doubles()) {
+            OptionalDouble result = fieldProvider.apply(field.name);
+            if (result.isPresent()) {
+                field.set(this, result.getAsDouble());
             }
         }
     }
 
+    /**
+     * Copy every field of another frame into this frame.
+     */
+    public void set(AnimationFrame other) {
+        for (FrameSchema.DoubleAccessor field : FrameSchema.doubles()) {
+            field.set(this, field.get(other));
+        }
+        for (FrameSchema.BooleanAccessor field : FrameSchema.booleans()) {
+            field.set(this, field.get(other));
+        }
+    }
+
+    /**
+     * Hash of every field value. Frames with the same parameters always have the same hash.
+     */
+    public long parameterHash() {
+        long hash = 1125899906842597L;
+        for (FrameSchema.DoubleAccessor field : FrameSchema.doubles()) {
+            hash = 31 * hash + Double.doubleToLongBits(field.get(this));
+        }
+        for (FrameSchema.BooleanAccessor field : FrameSchema.booleans()) {
+            hash = 31 * hash + (field.get(this) ? 1231 : 1237);
+        }
+        return hash;
+    }
+
+    /**
+     * Check if every field of this frame is exactly equal to the same field of another frame.
+     */
+    public boolean sameParameters(AnimationFrame other) {
+        for (FrameSchema.DoubleAccessor field : FrameSchema.doubles()) {
+            if (Double.doubleToLongBits(field.get(this)) != Double.doubleToLongBits(field.get(other))) return false;
+        }
+        for (FrameSchema.BooleanAccessor field : FrameSchema.booleans()) {
+            if (field.get(this) != field.get(other)) return false;
+        }
+        return true;
+    }
+
     public JsonObject toJson() {
         JsonObject obj = new JsonObject();
-        Field[] fields = this.getClass().getDeclaredFields();
-        for (Field field : fields) {
-            try {
-                BooleanJsonField booleanField = field.getAnnotation(BooleanJsonField.class);
-                if (booleanField != null) {
-                    writeJsonField(Json.of((Boolean) field.get(this)), obj, booleanField.value());
-                    continue;
-                }
-
-                DoubleJsonField doubleField = field.getAnnotation(DoubleJsonField.class);
-                if (doubleField != null) {
-                    writeJsonField(Json.of((Double) field.get(this)), obj, doubleField.value());
-                    continue;
-                }
-            } catch (IllegalAccessException e) {
-                // Ignored
+        for (FrameSchema.BooleanAccessor field : FrameSchema.booleans()) {
+            if (field.hasJsonPath()) {
+                writeJsonField(Json.of(field.get(this)), obj, field.jsonLevels());
+            }
+        }
+        for (FrameSchema.DoubleAccessor field : FrameSchema.doubles()) {
+            if (field.hasJsonPath()) {
+                writeJsonField(Json.of(field.get(this)), obj, field.jsonLevels());
             }
         }
         return obj;
     }
 
     public void apply(Scene scene) {
+        apply(scene, -1);
+    }
+
+    /**
+     * Apply this frame to a scene.
+     *
+     * @param index Index of the frame, recorded in the {@link AnimationEvents.FrameApply} event. -1 if unknown.
+     */
+    public void apply(Scene scene, int index) {
+        AnimationEvents.FrameApply event = new AnimationEvents.FrameApply(index);
+        event.begin();
+
         scene.setFogDensity(this.fogDensity);
         scene.setSkyFogDensity(this.skyFogDensity);
         scene.setFogColor(new Vector3(
@@ -332,5 +363,126 @@ public class AnimationFrame {
         scene.sky().setCloudZOffset(this.cloudOffsetZ);
 
         scene.setAnimationTime(this.animationTime);
+
+        event.commit();
+    }
+
+    public void applyDelta(Scene scene, AnimationFrame previous) {
+        applyDelta(scene, previous, -1);
+    }
+
+    /**
+     * Apply only the fields which differ from the frame last applied to a scene. Setters which take several fields
+     * are called if any of them changed. Unchanged sun, sky and water settings are skipped entirely, so frames where
+     * only the camera moves do not recompute the sun or refresh the sky.
+     *
+     * @param previous Frame last applied to the scene. If null, every field is applied.
+     * @param index    Index of the frame, recorded in the {@link AnimationEvents.FrameApply} event. -1 if unknown.
+     */
+    public void applyDelta(Scene scene, AnimationFrame previous, int index) {
+        if (previous == null) {
+            apply(scene, index);
+            return;
+        }
+
+        AnimationEvents.FrameApply event = new AnimationEvents.FrameApply(index);
+        event.delta = true;
+        event.begin();
+
+        if (changed(fogDensity, previous.fogDensity)) {
+            scene.setFogDensity(this.fogDensity);
+        }
+        if (changed(skyFogDensity, previous.skyFogDensity)) {
+            scene.setSkyFogDensity(this.skyFogDensity);
+        }
+        if (changed(fogColorR, previous.fogColorR) || changed(fogColorG, previous.fogColorG) ||
+                changed(fogColorB, previous.fogColorB)) {
+            scene.setFogColor(new Vector3(
+                    this.fogColorR,
+                    this.fogColorG,
+                    this.fogColorB
+            ));
+        }
+
+        if (waterWorldEnabled != previous.waterWorldEnabled) {
+            scene.setWaterPlaneEnabled(this.waterWorldEnabled);
+        }
+        if (changed(waterWorldHeight, previous.waterWorldHeight)) {
+            scene.setWaterPlaneHeight(this.waterWorldHeight);
+        }
+
+        if (changed(cameraPositionX, previous.cameraPositionX) || changed(cameraPositionY, previous.cameraPositionY) ||
+                changed(cameraPositionZ, previous.cameraPositionZ)) {
+            scene.camera().setPosition(new Vector3(
+                    this.cameraPositionX,
+                    this.cameraPositionY,
+                    this.cameraPositionZ
+            ));
+        }
+        if (changed(cameraOrientationYaw, previous.cameraOrientationYaw) ||
+                changed(cameraOrientationPitch, previous.cameraOrientationPitch) ||
+                changed(cameraOrientationRoll, previous.cameraOrientationRoll)) {
+            scene.camera().setView(
+                    this.cameraOrientationYaw,
+                    this.cameraOrientationPitch,
+                    this.cameraOrientationRoll
+            );
+        }
+        if (changed(cameraFov, previous.cameraFov)) {
+            scene.camera().setFoV(this.cameraFov);
+        }
+        if (changed(cameraDof, previous.cameraDof)) {
+            scene.camera().setDof(this.cameraDof);
+        }
+        if (changed(cameraFocus, previous.cameraFocus)) {
+            scene.camera().setSubjectDistance(this.cameraFocus);
+        }
+        if (changed(cameraExposure, previous.cameraExposure)) {
+            scene.setExposure(this.cameraExposure);
+        }
+
+        if (changed(sunAltitude, previous.sunAltitude)) {
+            scene.sun().setAltitude(this.sunAltitude);
+        }
+        if (changed(sunAzimuth, previous.sunAzimuth)) {
+            scene.sun().setAzimuth(this.sunAzimuth);
+        }
+        if (changed(sunIntensity, previous.sunIntensity)) {
+            scene.sun().setIntensity(this.sunIntensity);
+        }
+        if (changed(sunColorR, previous.sunColorR) || changed(sunColorG, previous.sunColorG) ||
+                changed(sunColorB, previous.sunColorB)) {
+            scene.sun().setColor(new Vector3(
+                    this.sunColorR,
+                    this.sunColorG,
+                    this.sunColorB
+            ));
+        }
+        if (sunDraw != previous.sunDraw) {
+            scene.sun().setDrawTexture(this.sunDraw);
+        }
+
+        if (cloudsEnabled != previous.cloudsEnabled) {
+            scene.sky().setCloudsEnabled(this.cloudsEnabled);
+        }
+        if (changed(cloudOffsetX, previous.cloudOffsetX)) {
+            scene.sky().setCloudXOffset(this.cloudOffsetX);
+        }
+        if (changed(cloudOffsetY, previous.cloudOffsetY)) {
+            scene.sky().setCloudYOffset(this.cloudOffsetY);
+        }
+        if (changed(cloudOffsetZ, previous.cloudOffsetZ)) {
+            scene.sky().setCloudZOffset(this.cloudOffsetZ);
+        }
+
+        if (changed(animationTime, previous.animationTime)) {
+            scene.setAnimationTime(this.animationTime);
+        }
+
+        event.commit();
+    }
+
+    private static boolean changed(double value, double previous) {
+        return Double.doubleToLongBits(value) != Double.doubleToLongBits(previous);
     }
 }
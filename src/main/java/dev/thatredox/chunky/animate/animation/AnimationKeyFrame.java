@@ -1,7 +1,5 @@
 package dev.thatredox.chunky.animate.animation;
 
-
-import dev.thatredox.chunky.animate.reflection.DoubleField;
 import se.llbit.json.JsonNumber;
 import se.llbit.json.JsonObject;
 import se.llbit.json.JsonString;
@@ -49,41 +47,9 @@ public class AnimationKeyFrame {
 
     public static Field[] interpolatableFields() {
         if (interpolatableFieldsResult == null) {
-            SortedSet<Field> out = new TreeSet<>((o1, o2) -> {
-                String fieldName1 = o1.getName();
-                String fieldName2 = o2.getName();
-
-                String secondaryCompare1 = "";
-                String secondaryCompare2 = "";
-
-                String[] parts;
-
-                DoubleField df1 = o1.getAnnotation(DoubleField.class);
-                parts = df1.sortOrder().split("\\.");
-                if (parts.length == 2) {
-                    fieldName1 = parts[0];
-                    secondaryCompare1 = parts[1];
-                }
-
-                DoubleField df2 = o2.getAnnotation(DoubleField.class);
-                parts = df2.sortOrder().split("\\.");
-                if (parts.length == 2) {
-                    fieldName2 = parts[0];
-                    secondaryCompare2 = parts[1];
-                }
-
-                if (fieldName1.equals(fieldName2)) {
-                    return secondaryCompare1.compareTo(secondaryCompare2);
-                } else {
-                    return fieldName1.compareTo(fieldName2);
-                }
-            });
-            for (Field field : AnimationFrame.class.getDeclaredFields()) {
-                if (field.getType() == double.class && field.isAnnotationPresent(DoubleField.class)) {
-                    out.add(field);
-                }
-            }
-            interpolatableFieldsResult = out.toArray(new Field[0]);
+            interpolatableFieldsResult = Arrays.stream(FrameSchema.interpolatable())
+                    .map(accessor -> accessor.field)
+                    .toArray(Field[]::new);
         }
         return interpolatableFieldsResult;
     }
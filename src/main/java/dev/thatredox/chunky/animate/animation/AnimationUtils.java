@@ -1,5 +1,6 @@
 package dev.thatredox.chunky.animate.animation;
 
+import dev.thatredox.chunky.animate.util.AnimationEvents;
 import it.unimi.dsi.fastutil.doubles.Double2ObjectMap;
 import it.unimi.dsi.fastutil.doubles.Double2ObjectSortedMap;
 import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
@@ -14,8 +15,9 @@ import se.llbit.log.Log;
 import se.llbit.math.QuickMath;
 
 import java.io.*;
-import java.lang.reflect.Field;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
 
 public class AnimationUtils {
     public static JsonObject saveKeyframesJson(Double2ObjectSortedMap<AnimationKeyFrame> keyframes) {
@@ -55,88 +57,112 @@ public class AnimationUtils {
         }
     }
 
-    public static void loadFramesFromFolder(File folder, ArrayList<AnimationFrame> frames, Scene scene) {
+    public static void loadFramesFromFolder(File folder, FrameTable frames, Scene scene) {
         loadFramesFromFolder(folder, frames, scene, (progress, total) -> true);
     }
 
-    public static void loadFramesFromFolder(File folder, ArrayList<AnimationFrame> frames, Scene scene, ProgressListener progress) {
+    public static void loadFramesFromFolder(File folder, FrameTable frames, Scene scene, ProgressListener progress) {
         if (folder == null) return;
 
         frames.clear();
-        AnimationFrame frame = new AnimationFrame(scene);
-
-        File[] files = folder.listFiles();
-        if (files == null) return;
-        Arrays.sort(files, Comparator.comparing(File::getName));
-
-        for (int i = 0; i < files.length; i++) {
-            File file = files[i];
-            if (file.getName().endsWith(".json")) {
-                try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
-                    JsonParser parser = new JsonParser(in);
-                    frame = new AnimationFrame(parser.parse().asObject(), frame);
-                    frames.add(frame);
-                } catch (JsonParser.SyntaxError | IOException e) {
-                    Log.warn("Failed to load animation frame " + file.getName(), e);
-                }
-            }
-            if (!progress.accept(i+1, files.length)) return;
-        }
+        new FolderFrameLoader(folder, scene, frames, Runtime.getRuntime().availableProcessors())
+                .setProgressListener(progress)
+                .run();
     }
 
+    /**
+     * Fit a spline to every interpolatable field. Fields are independent and are fitted in parallel on the common
+     * fork-join pool, so {@code progress} may be called from several threads (never concurrently).
+     *
+     * @return Splines by field name. Empty if the operation was cancelled.
+     */
     public static Map<String, PolynomialSplineFunction> interpolateKeyframes(Double2ObjectSortedMap<AnimationKeyFrame> keyframes, ProgressListener progress) {
-        Map<String, PolynomialSplineFunction> interps = new HashMap<>();
-        double endTime = keyframes.lastDoubleKey();
-        int numKeyFrames = keyframes.size();
-        int progressTotal = AnimationKeyFrame.interpolatableFields().length;
-        int progressCount = 0;
-
-        DoubleArrayList times = new DoubleArrayList(numKeyFrames);
-        ArrayList<Double> entries = new ArrayList<>(numKeyFrames);
-        Field[] fields = AnimationKeyFrame.interpolatableFields();
-        for (Field field : fields) {
-            times.clear();
-            entries.clear();
-            for (Double2ObjectMap.Entry<AnimationKeyFrame> keyFrameEntry : keyframes.double2ObjectEntrySet()) {
-                AnimationKeyFrame keyFrame = keyFrameEntry.getValue();
-                if (keyFrame.interpFields.containsKey(field.getName())) {
-                    times.add(keyFrameEntry.getDoubleKey());
-                    entries.add(keyFrame.interpFields.get(field.getName()));
+        FrameSchema.DoubleAccessor[] fields = FrameSchema.interpolatable();
+        int progressTotal = fields.length;
+
+        // Snapshot the keyframes so the workers do not iterate the shared map
+        KeyframeSnapshot snapshot = new KeyframeSnapshot(keyframes);
+
+        PolynomialSplineFunction[] results = new PolynomialSplineFunction[fields.length];
+        Object progressLock = new Object();
+        int[] progressCount = {0};
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+
+        IntStream.range(0, fields.length).parallel().forEach(i -> {
+            if (cancelled.get()) return;
+            results[i] = interpolateField(fields[i].name, snapshot);
+
+            synchronized (progressLock) {
+                if (!cancelled.get() && !progress.accept(++progressCount[0], progressTotal)) {
+                    cancelled.set(true);
                 }
             }
+        });
 
-            if (!times.isEmpty()) {
-                if (times.getDouble(0) > 0) {
-                    times.add(0, 0);
-                    entries.add(0, entries.get(0));
-                }
-                if (times.getDouble(times.size()-1) != endTime) {
-                    times.add(endTime);
-                    entries.add(entries.get(entries.size() - 1));
-                }
-                if (times.size() == 2) {
-                    times.add(1, (times.getDouble(0) + times.getDouble(1)) / 2);
-                    entries.add(1, (entries.get(0) + entries.get(1)) / 2);
-                }
+        Map<String, PolynomialSplineFunction> interps = new HashMap<>();
+        if (cancelled.get()) return interps;
+        for (int i = 0; i < fields.length; i++) {
+            if (results[i] != null) {
+                interps.put(fields[i].name, results[i]);
+            }
+        }
+        return interps;
+    }
 
-                double[] entriesArray = new double[entries.size()];
-                Arrays.setAll(entriesArray, entries::get);
-                interps.put(field.getName(), new SplineInterpolator().interpolate(
-                        times.toArray(new double[0]),
-                        entriesArray));
+    /**
+     * Fit a spline to a single field.
+     *
+     * @return The spline or null if no keyframe sets this field.
+     */
+    static PolynomialSplineFunction interpolateField(String field, KeyframeSnapshot keyframes) {
+        double[][] knots = fieldKnots(field, keyframes);
+        if (knots == null) return null;
+        return new SplineInterpolator().interpolate(knots[0], knots[1]);
+    }
+
+    /**
+     * Collect the spline knots of a single field, padded to cover the whole animation.
+     *
+     * @return {@code {times, values}} or null if no keyframe sets this field.
+     */
+    static double[][] fieldKnots(String field, KeyframeSnapshot keyframes) {
+        double[] keyTimes = keyframes.times;
+        AnimationKeyFrame[] keys = keyframes.keys;
+        double endTime = keyframes.endTime;
+
+        DoubleArrayList times = new DoubleArrayList(keys.length + 2);
+        DoubleArrayList entries = new DoubleArrayList(keys.length + 2);
+        for (int i = 0; i < keys.length; i++) {
+            Double value = keys[i].interpFields.get(field);
+            if (value != null) {
+                times.add(keyTimes[i]);
+                entries.add(value);
             }
+        }
 
-            if (!progress.accept(++progressCount, progressTotal)) return new HashMap<>();
+        if (times.isEmpty()) return null;
+
+        if (times.getDouble(0) > 0) {
+            times.add(0, 0);
+            entries.add(0, entries.getDouble(0));
+        }
+        if (times.getDouble(times.size()-1) != endTime) {
+            times.add(endTime);
+            entries.add(entries.getDouble(entries.size() - 1));
+        }
+        if (times.size() == 2) {
+            times.add(1, (times.getDouble(0) + times.getDouble(1)) / 2);
+            entries.add(1, (entries.getDouble(0) + entries.getDouble(1)) / 2);
         }
 
-        return interps;
+        return new double[][] {times.toDoubleArray(), entries.toDoubleArray()};
     }
 
-    public static void loadFramesFromKeyframes(Double2ObjectSortedMap<AnimationKeyFrame> keyframes, double framerate, ArrayList<AnimationFrame> frames, Scene scene) {
+    public static void loadFramesFromKeyframes(Double2ObjectSortedMap<AnimationKeyFrame> keyframes, double framerate, FrameTable frames, Scene scene) {
         loadFramesFromKeyframes(keyframes, framerate, frames, scene, (progress, total) -> true);
     }
 
-    public static void loadFramesFromKeyframes(Double2ObjectSortedMap<AnimationKeyFrame> keyframes, double framerate, ArrayList<AnimationFrame> frames, Scene scene, ProgressListener progress) {
+    public static void loadFramesFromKeyframes(Double2ObjectSortedMap<AnimationKeyFrame> keyframes, double framerate, FrameTable frames, Scene scene, ProgressListener progress) {
         if (framerate == 0) return;
         frames.clear();
 
@@ -144,31 +170,113 @@ public class AnimationUtils {
         int numFrames = (int) (endTime * framerate) + 1;
         if (numFrames < 1) return;
 
-        int progressTotal = AnimationKeyFrame.interpolatableFields().length + numFrames;
-        int progressCount = AnimationKeyFrame.interpolatableFields().length;
+        AnimationEvents.FrameGeneration event = new AnimationEvents.FrameGeneration("keyframes");
+        event.begin();
+        try {
+            sampleKeyframes(keyframes, framerate, frames, scene, progress, endTime, numFrames);
+        } finally {
+            event.frameCount = frames.size();
+            event.commit();
+        }
+    }
+
+    private static void sampleKeyframes(Double2ObjectSortedMap<AnimationKeyFrame> keyframes, double framerate, FrameTable frames, Scene scene, ProgressListener progress, double endTime, int numFrames) {
+
+        int progressTotal = FrameSchema.interpolatable().length + numFrames;
+        int progressCount = FrameSchema.interpolatable().length;
 
-        Map<String, PolynomialSplineFunction> interps =
-                interpolateKeyframes(keyframes, (prog, total) -> progress.accept(prog, progressTotal));
+        boolean[] cancelled = {false};
+        Map<String, PolynomialSplineFunction> interps = interpolateKeyframes(keyframes, (prog, total) -> {
+            cancelled[0] = !progress.accept(prog, progressTotal);
+            return !cancelled[0];
+        });
+        if (cancelled[0]) return;
+        CompiledSplines splines = new CompiledSplines(interps, endTime);
 
+        // Sample in chunks so progress can still be reported and cancelled
+        AnimationFrame base = new AnimationFrame(scene);
         frames.ensureCapacity(numFrames);
-        AnimationFrame frame = new AnimationFrame(scene);
-        for (int i = 0; i < numFrames; i++) {
-            frame = applyInterpolation(interps, i / framerate, endTime, frame);
-            frames.add(frame);
+        double[] times = new double[Math.min(numFrames, 4096)];
+        for (int start = 0; start < numFrames; start += times.length) {
+            int count = Math.min(times.length, numFrames - start);
+            if (count != times.length) times = new double[count];
+            for (int i = 0; i < count; i++) {
+                times[i] = (start + i) / framerate;
+            }
+            splines.sample(times, base, frames);
+
+            progressCount += count;
+            if (!progress.accept(progressCount, progressTotal)) return;
+        }
+    }
+
+    public static FrameSource framesFromKeyframes(Double2ObjectSortedMap<AnimationKeyFrame> keyframes, double framerate, Scene scene) {
+        return framesFromKeyframes(keyframes, framerate, scene, (progress, total) -> true);
+    }
+
+    /**
+     * Create a frame source which samples the keyframe splines when a frame is requested, instead of building every
+     * frame up front.
+     *
+     * @return The frames. Empty if there are no frames or the operation was cancelled.
+     */
+    public static FrameSource framesFromKeyframes(Double2ObjectSortedMap<AnimationKeyFrame> keyframes, double framerate, Scene scene, ProgressListener progress) {
+        if (framerate == 0 || keyframes.isEmpty()) return new FrameTable();
+
+        double endTime = keyframes.lastDoubleKey();
+        if ((int) (endTime * framerate) + 1 < 1) return new FrameTable();
 
-            if (!progress.accept(++progressCount, progressTotal)) return;
+        // Only the splines are fitted here, frames are sampled on demand
+        AnimationEvents.FrameGeneration event = new AnimationEvents.FrameGeneration("keyframes");
+        event.begin();
+        FrameSource frames = new FrameTable();
+        try {
+            boolean[] cancelled = {false};
+            Map<String, PolynomialSplineFunction> interps = interpolateKeyframes(keyframes, (prog, total) -> {
+                cancelled[0] = !progress.accept(prog, total);
+                return !cancelled[0];
+            });
+            if (!cancelled[0]) {
+                frames = new InterpolatedFrameSource(interps, new AnimationFrame(scene), framerate, endTime);
+            }
+        } finally {
+            event.frameCount = frames.size();
+            event.commit();
         }
+        return frames;
     }
 
     public static AnimationFrame applyInterpolation(Map<String, PolynomialSplineFunction> interp, double time, double endTime, AnimationFrame prev) {
         double safeTime = QuickMath.clamp(time, 0, endTime);
-        return new AnimationFrame(field -> {
-            if (interp.containsKey(field)) {
-                return OptionalDouble.of(interp.get(field).value(safeTime));
-            } else {
-                return OptionalDouble.empty();
+        AnimationFrame frame = new AnimationFrame(prev);
+        for (FrameSchema.DoubleAccessor field : FrameSchema.doubles()) {
+            PolynomialSplineFunction spline = interp.get(field.name);
+            if (spline != null) {
+                field.set(frame, spline.value(safeTime));
             }
-        }, prev);
+        }
+        return frame;
+    }
+
+    /**
+     * Keyframe times and keyframes copied out of a keyframe map.
+     */
+    static class KeyframeSnapshot {
+        final double[] times;
+        final AnimationKeyFrame[] keys;
+        final double endTime;
+
+        KeyframeSnapshot(Double2ObjectSortedMap<AnimationKeyFrame> keyframes) {
+            times = new double[keyframes.size()];
+            keys = new AnimationKeyFrame[keyframes.size()];
+            int i = 0;
+            for (Double2ObjectMap.Entry<AnimationKeyFrame> entry : keyframes.double2ObjectEntrySet()) {
+                times[i] = entry.getDoubleKey();
+                keys[i] = entry.getValue();
+                i++;
+            }
+            endTime = keyframes.lastDoubleKey();
+        }
     }
 
     public interface ProgressListener {
@@ -0,0 +1,166 @@
+package dev.thatredox.chunky.animate.animation;
+
+import org.apache.commons.math3.analysis.polynomials.PolynomialFunction;
+import org.apache.commons.math3.analysis.polynomials.PolynomialSplineFunction;
+import se.llbit.math.QuickMath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Field splines flattened into primitive arrays. Each field stores its knots and, for every segment, a fixed number of
+ * polynomial coefficients. Evaluation gives the same results as {@link PolynomialSplineFunction#value(double)}.
+ */
+public class CompiledSplines {
+    private final FrameSchema.DoubleAccessor[] fields;
+
+    /**
+     * Offset of the first knot of each field in {@link #knots}. Field {@code f} has
+     * {@code knotOffset[f+1] - knotOffset[f]} knots and one segment less.
+     */
+    private final int[] knotOffset;
+    private final double[] knots;
+
+    /**
+     * Segment coefficients, lowest order first, {@link #order} per segment. Segment {@code s} of field {@code f}
+     * starts at {@code (knotOffset[f] - f + s) * order}.
+     */
+    private final double[] coefficients;
+    private final int order;
+
+    private final double endTime;
+
+    /**
+     * @param interps Splines by field name, from {@link AnimationUtils#interpolateKeyframes}.
+     * @param endTime Time of the last keyframe. Sample times are clamped to {@code [0, endTime]}.
+     */
+    public CompiledSplines(Map<String, PolynomialSplineFunction> interps, double endTime) {
+        this.endTime = endTime;
+
+        ArrayList<FrameSchema.DoubleAccessor> fields = new ArrayList<>();
+        ArrayList<PolynomialSplineFunction> splines = new ArrayList<>();
+        int numKnots = 0;
+        int order = 1;
+        for (FrameSchema.DoubleAccessor field : FrameSchema.doubles()) {
+            PolynomialSplineFunction spline = interps.get(field.name);
+            if (spline != null) {
+                fields.add(field);
+                splines.add(spline);
+                numKnots += spline.getKnots().length;
+                for (PolynomialFunction polynomial : spline.getPolynomials()) {
+                    order = Math.max(order, polynomial.getCoefficients().length);
+                }
+            }
+        }
+
+        this.fields = fields.toArray(new FrameSchema.DoubleAccessor[0]);
+        this.order = order;
+        this.knotOffset = new int[this.fields.length + 1];
+        this.knots = new double[numKnots];
+        this.coefficients = new double[(numKnots - this.fields.length) * order];
+
+        int knot = 0;
+        for (int f = 0; f < this.fields.length; f++) {
+            PolynomialSplineFunction spline = splines.get(f);
+            double[] splineKnots = spline.getKnots();
+            PolynomialFunction[] polynomials = spline.getPolynomials();
+
+            knotOffset[f] = knot;
+            System.arraycopy(splineKnots, 0, knots, knot, splineKnots.length);
+            int segment = knot - f;
+            for (int s = 0; s < polynomials.length; s++) {
+                double[] c = polynomials[s].getCoefficients();
+                System.arraycopy(c, 0, coefficients, (segment + s) * order, c.length);
+            }
+            knot += splineKnots.length;
+        }
+        knotOffset[this.fields.length] = knot;
+    }
+
+    /**
+     * Number of fields with a spline.
+     */
+    public int size() {
+        return fields.length;
+    }
+
+    public double getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Write the value of every spline at {@code time} into a frame. Fields without a spline are left unchanged.
+     */
+    public void evaluate(double time, AnimationFrame dest) {
+        double safeTime = QuickMath.clamp(time, 0, endTime);
+        for (int f = 0; f < fields.length; f++) {
+            fields[f].set(dest, evaluateSegment(f, findSegment(f, safeTime), safeTime));
+        }
+    }
+
+    /**
+     * Append one row per sample time to a frame table in a single pass. Fields without a spline are copied from
+     * {@code base}. Each field walks its segments forwards, so sample times should be sorted in ascending order.
+     *
+     * @return Index of the first appended row.
+     */
+    public int sample(double[] times, AnimationFrame base, FrameTable out) {
+        int first = out.addRows(times.length, base);
+        int last = first + times.length;
+        double[] safeTimes = new double[times.length];
+        for (int i = 0; i < times.length; i++) {
+            safeTimes[i] = QuickMath.clamp(times[i], 0, endTime);
+        }
+
+        for (int f = 0; f < fields.length; f++) {
+            double[] column = out.doubleColumn(fields[f].index);
+            int start = knotOffset[f];
+            int lastSegment = knotOffset[f + 1] - start - 2;
+            int segment = 0;
+            for (int row = first; row < last; row++) {
+                double t = safeTimes[row - first];
+                if (t < knots[start + segment]) {
+                    segment = findSegment(f, t);
+                } else {
+                    while (segment < lastSegment && t >= knots[start + segment + 1]) {
+                        segment++;
+                    }
+                }
+                column[row] = evaluateSegment(f, segment, t);
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Same segment selection as {@link PolynomialSplineFunction#value(double)}.
+     */
+    private int findSegment(int f, double t) {
+        int start = knotOffset[f];
+        int end = knotOffset[f + 1];
+        int i = Arrays.binarySearch(knots, start, end, t);
+        if (i < 0) {
+            i = -i - 2;
+        }
+        i -= start;
+        int lastSegment = end - start - 2;
+        if (i > lastSegment) {
+            i = lastSegment;
+        }
+        return Math.max(i, 0);
+    }
+
+    /**
+     * Horner evaluation, in the same order as {@link PolynomialFunction#value(double)}.
+     */
+    private double evaluateSegment(int f, int segment, double t) {
+        double x = t - knots[knotOffset[f] + segment];
+        int base = (knotOffset[f] - f + segment) * order;
+        double result = coefficients[base + order - 1];
+        for (int j = order - 2; j >= 0; j--) {
+            result = x * result + coefficients[base + j];
+        }
+        return result;
+    }
+}
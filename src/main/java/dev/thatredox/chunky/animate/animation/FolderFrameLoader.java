@@ -0,0 +1,265 @@
+package dev.thatredox.chunky.animate.animation;
+
+import dev.thatredox.chunky.animate.util.AnimationEvents;
+import se.llbit.chunky.renderer.scene.Scene;
+import se.llbit.json.JsonObject;
+import se.llbit.json.JsonParser;
+import se.llbit.log.Log;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.*;
+
+/**
+ * Loads a folder of JSON frames. Files are parsed in parallel and the parsed values are folded into the frame table in
+ * file name order, since every frame inherits the fields it does not set from the previous frame.
+ * <p>
+ * Frames can be read while later frames are still loading. Use {@link #awaitFrame(int)} to wait for a frame.
+ */
+public class FolderFrameLoader implements FrameSource, Runnable {
+    private final File[] files;
+    private final AnimationFrame base;
+    private final FrameTable frames;
+    private final int threads;
+    private final int[] firstDoubleRow = new int[FrameSchema.doubles().length];
+    private final int[] firstBooleanRow = new int[FrameSchema.booleans().length];
+
+    private AnimationUtils.ProgressListener progress = (progress, total) -> true;
+    private boolean complete = false;
+
+    /**
+     * @param folder  Folder containing {@code *.json} frames.
+     * @param scene   Scene to take fields missing from the first frame from.
+     * @param frames  Table to append frames to. Must not be read directly until loading has completed.
+     * @param threads Number of parser threads.
+     */
+    public FolderFrameLoader(File folder, Scene scene, FrameTable frames, int threads) {
+        this(folder, new AnimationFrame(scene), frames, threads);
+    }
+
+    FolderFrameLoader(File folder, AnimationFrame base, FrameTable frames, int threads) {
+        this.files = frameFiles(folder);
+        this.base = base;
+        this.frames = frames;
+        this.threads = Math.max(threads, 1);
+        Arrays.fill(firstDoubleRow, -1);
+        Arrays.fill(firstBooleanRow, -1);
+    }
+
+    /**
+     * Frame files in a folder, in frame order.
+     */
+    static File[] frameFiles(File folder) {
+        File[] files = folder == null ? null : folder.listFiles((dir, name) -> name.endsWith(".json"));
+        if (files == null) return new File[0];
+        Arrays.sort(files, Comparator.comparing(File::getName));
+        return files;
+    }
+
+    /**
+     * Frame files being loaded, in frame order.
+     */
+    File[] getFiles() {
+        return files;
+    }
+
+    public FolderFrameLoader(File folder, Scene scene) {
+        this(folder, scene, new FrameTable(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Set the progress listener. Progress is reported on the loading thread once per file.
+     */
+    public FolderFrameLoader setProgressListener(AnimationUtils.ProgressListener progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    /**
+     * Load the frames on a background thread.
+     */
+    public FolderFrameLoader start() {
+        Thread thread = new Thread(this, "Frame Folder Loader");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Load the frames on the current thread.
+     */
+    @Override
+    public void run() {
+        AnimationEvents.FrameGeneration event = new AnimationEvents.FrameGeneration("folder");
+        event.begin();
+        ExecutorService parsers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "Frame Parser");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            // Bound the number of parsed frames waiting to be folded
+            int window = threads * 4;
+            ArrayList<Future<FrameDelta>> pending = new ArrayList<>(files.length);
+            int submitted = 0;
+            for (; submitted < Math.min(window, files.length); submitted++) {
+                pending.add(submit(parsers, files[submitted]));
+            }
+
+            AnimationFrame frame = new AnimationFrame(base);
+            for (int i = 0; i < files.length; i++) {
+                FrameDelta delta = pending.get(i).get();
+                pending.set(i, null);
+                if (submitted < files.length) {
+                    pending.add(submit(parsers, files[submitted++]));
+                }
+
+                if (delta != null) {
+                    delta.applyTo(frame);
+                    delta.markFirstRow(frames.size(), firstDoubleRow, firstBooleanRow);
+                    synchronized (this) {
+                        frames.add(frame);
+                        notifyAll();
+                    }
+                }
+                if (!progress.accept(i + 1, files.length)) break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.error("Failed to load animation frames", e.getCause());
+        } finally {
+            parsers.shutdownNow();
+            synchronized (this) {
+                complete = true;
+                notifyAll();
+            }
+            event.frameCount = frames.size();
+            event.commit();
+        }
+    }
+
+    private static Future<FrameDelta> submit(ExecutorService parsers, File file) {
+        return parsers.submit(() -> {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                JsonParser parser = new JsonParser(in);
+                return new FrameDelta(parser.parse().asObject());
+            } catch (JsonParser.SyntaxError | IOException e) {
+                Log.warn("Failed to load animation frame " + file.getName(), e);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Number of frame files found. Frames which fail to parse are skipped, so this may be larger than the final size.
+     */
+    @Override
+    public int expectedSize() {
+        return files.length;
+    }
+
+    @Override
+    public synchronized int size() {
+        return frames.size();
+    }
+
+    @Override
+    public synchronized void load(int index, AnimationFrame dest) {
+        frames.load(index, dest);
+    }
+
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public synchronized boolean awaitFrame(int index) throws InterruptedException {
+        while (index >= frames.size() && !complete) {
+            wait();
+        }
+        return index < frames.size();
+    }
+
+    /**
+     * Index of the first frame which set each {@code double} field, or -1 if no frame set it. Frames before this take
+     * the field from the scene. Only valid once loading has completed.
+     */
+    int[] firstDoubleRow() {
+        return firstDoubleRow;
+    }
+
+    /**
+     * Same as {@link #firstDoubleRow()} for {@code boolean} fields.
+     */
+    int[] firstBooleanRow() {
+        return firstBooleanRow;
+    }
+
+    /**
+     * Wait for every frame to load.
+     *
+     * @return Number of frames loaded.
+     */
+    public synchronized int awaitComplete() throws InterruptedException {
+        while (!complete) {
+            wait();
+        }
+        return frames.size();
+    }
+
+    /**
+     * Fields set by a single frame file.
+     */
+    private static class FrameDelta {
+        private final double[] doubles = new double[FrameSchema.doubles().length];
+        private final boolean[] hasDouble = new boolean[doubles.length];
+        private final boolean[] booleans = new boolean[FrameSchema.booleans().length];
+        private final boolean[] hasBoolean = new boolean[booleans.length];
+
+        FrameDelta(JsonObject json) {
+            for (FrameSchema.DoubleAccessor field : FrameSchema.doubles()) {
+                if (field.hasJsonPath()) {
+                    double value = field.fromJson(json, Double.NaN);
+                    doubles[field.index] = value;
+                    hasDouble[field.index] = !Double.isNaN(value);
+                }
+            }
+            for (FrameSchema.BooleanAccessor field : FrameSchema.booleans()) {
+                if (field.hasJsonPath()) {
+                    boolean value = field.fromJson(json, true);
+                    booleans[field.index] = value;
+                    hasBoolean[field.index] = value == field.fromJson(json, false);
+                }
+            }
+        }
+
+        void markFirstRow(int row, int[] firstDoubleRow, int[] firstBooleanRow) {
+            for (int i = 0; i < hasDouble.length; i++) {
+                if (hasDouble[i] && firstDoubleRow[i] == -1) firstDoubleRow[i] = row;
+            }
+            for (int i = 0; i < hasBoolean.length; i++) {
+                if (hasBoolean[i] && firstBooleanRow[i] == -1) firstBooleanRow[i] = row;
+            }
+        }
+
+        void applyTo(AnimationFrame frame) {
+            for (FrameSchema.DoubleAccessor field : FrameSchema.doubles()) {
+                if (hasDouble[field.index]) {
+                    field.set(frame, doubles[field.index]);
+                }
+            }
+            for (FrameSchema.BooleanAccessor field : FrameSchema.booleans()) {
+                if (hasBoolean[field.index]) {
+                    field.set(frame, booleans[field.index]);
+                }
+            }
+        }
+    }
+}
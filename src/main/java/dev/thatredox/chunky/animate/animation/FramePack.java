@@ -0,0 +1,235 @@
+package dev.thatredox.chunky.animate.animation;
+
+import se.llbit.log.Log;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Binary container for a frame sequence. Packs are read with {@link PackedFrameSource}.
+ * <p>
+ * Layout, big endian:
+ * <pre>
+ * int    magic
+ * int    version
+ * int    header length
+ * header:
+ *   int  double field count, then per field: UTF JSON path, int first row
+ *   int  boolean field count, then per field: UTF JSON path, int first row
+ *   int  frame count
+ *   int  frame file count, then long hash of the frame file names and sizes
+ * padding to a multiple of 8 bytes
+ * rows:  doubles, then booleans as a bit mask, padded to a multiple of 8 bytes
+ * </pre>
+ * Fields are identified by their JSON path. The first row of a field is the first frame which set it, earlier frames
+ * take the field from the scene. Fields which are never set are not stored. The frame files a pack was made from are
+ * recorded so a pack which no longer matches its folder is not used.
+ */
+public final class FramePack {
+    public static final String EXTENSION = ".framepack";
+
+    static final int MAGIC = 0x43414650; // "CAFP"
+    static final int VERSION = 2;
+    static final int PREAMBLE_SIZE = 12;
+
+    private FramePack() {
+    }
+
+    /**
+     * Pack a folder of JSON frames.
+     *
+     * @param folder   Folder containing {@code *.json} frames.
+     * @param out      File to write the pack to.
+     * @param threads  Number of parser threads.
+     * @param progress Progress listener, called once per frame file.
+     * @return Number of frames packed.
+     */
+    public static int pack(File folder, File out, int threads, AnimationUtils.ProgressListener progress)
+            throws IOException, InterruptedException {
+        FrameTable frames = new FrameTable();
+        FolderFrameLoader loader = new FolderFrameLoader(folder, new AnimationFrame(), frames, threads);
+        loader.setProgressListener(progress).run();
+        int count = loader.awaitComplete();
+        write(out, frames, loader.firstDoubleRow(), loader.firstBooleanRow(), loader.getFiles());
+        return count;
+    }
+
+    /**
+     * Write a frame table.
+     *
+     * @param firstDoubleRow  First row which sets each {@code double} field, or -1 to leave the field out.
+     * @param firstBooleanRow First row which sets each {@code boolean} field, or -1 to leave the field out.
+     * @param sources         Frame files the table was loaded from.
+     */
+    static void write(File out, FrameTable frames, int[] firstDoubleRow, int[] firstBooleanRow, File[] sources)
+            throws IOException {
+        FrameSchema.DoubleAccessor[] doubles = packedDoubles(firstDoubleRow);
+        FrameSchema.BooleanAccessor[] booleans = packedBooleans(firstBooleanRow);
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeInt(doubles.length);
+        for (FrameSchema.DoubleAccessor field : doubles) {
+            header.writeUTF(field.jsonPath);
+            header.writeInt(firstDoubleRow[field.index]);
+        }
+        header.writeInt(booleans.length);
+        for (FrameSchema.BooleanAccessor field : booleans) {
+            header.writeUTF(field.jsonPath);
+            header.writeInt(firstBooleanRow[field.index]);
+        }
+        header.writeInt(frames.size());
+        header.writeInt(sources.length);
+        header.writeLong(sourceHash(sources));
+        header.flush();
+
+        int rowSize = rowSize(doubles.length, booleans.length);
+        try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(out)))) {
+            os.writeInt(MAGIC);
+            os.writeInt(VERSION);
+            os.writeInt(headerBytes.size());
+            headerBytes.writeTo(os);
+            pad(os, dataOffset(headerBytes.size()) - PREAMBLE_SIZE - headerBytes.size());
+
+            byte[] mask = new byte[rowSize - doubles.length * 8];
+            for (int row = 0; row < frames.size(); row++) {
+                for (FrameSchema.DoubleAccessor field : doubles) {
+                    os.writeDouble(frames.getDouble(row, field.index));
+                }
+                Arrays.fill(mask, (byte) 0);
+                for (int i = 0; i < booleans.length; i++) {
+                    if (frames.getBoolean(row, booleans[i].index)) {
+                        mask[i >> 3] |= (byte) (1 << (i & 7));
+                    }
+                }
+                os.write(mask);
+            }
+        }
+    }
+
+    /**
+     * Check if a file starts with the frame pack magic number.
+     */
+    public static boolean isFramePack(File file) {
+        if (!file.isFile()) return false;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining()) {
+                if (channel.read(magic) < 0) return false;
+            }
+            magic.flip();
+            return magic.getInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Find a frame pack in a folder of frames. A pack is only used if it was made from the frame files which are in
+     * the folder now, and no frame file is newer than it. Stale packs are skipped with a warning.
+     *
+     * @return The newest up to date pack or null if there is none.
+     */
+    public static File findPack(File folder) {
+        File[] packs = folder.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (packs == null || packs.length == 0) return null;
+        Arrays.sort(packs, Comparator.comparingLong(File::lastModified).reversed());
+
+        File[] frames = FolderFrameLoader.frameFiles(folder);
+        long newestFrame = 0;
+        for (File frame : frames) {
+            newestFrame = Math.max(newestFrame, frame.lastModified());
+        }
+        long hash = sourceHash(frames);
+        for (File pack : packs) {
+            String stale;
+            if (!isFramePack(pack)) {
+                stale = "not a frame pack";
+            } else if (pack.lastModified() < newestFrame) {
+                stale = "frames were modified after it was packed";
+            } else {
+                try {
+                    stale = checkSources(pack, frames.length, hash);
+                } catch (IOException e) {
+                    stale = e.getMessage() != null ? e.getMessage() : e.toString();
+                }
+            }
+            if (stale == null) return pack;
+            Log.warn("Skipping frame pack " + pack.getName() + ": " + stale);
+        }
+        return null;
+    }
+
+    /**
+     * Compare the frame files recorded in a pack with the frame files in its folder.
+     *
+     * @return Null if they match, otherwise why the pack is stale.
+     */
+    private static String checkSources(File pack, int count, long hash) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(pack)))) {
+            in.readInt();
+            int version = in.readInt();
+            if (version != VERSION) return "unsupported version " + version;
+            in.readInt();
+            for (int types = 0; types < 2; types++) {
+                int fields = in.readInt();
+                for (int i = 0; i < fields; i++) {
+                    in.readUTF();
+                    in.readInt();
+                }
+            }
+            in.readInt();
+            int packedCount = in.readInt();
+            if (packedCount != count) {
+                return "packed from " + packedCount + " frame files, but the folder has " + count;
+            }
+            return in.readLong() == hash ? null : "frame files were renamed or changed";
+        }
+    }
+
+    /**
+     * Hash of the names and sizes of frame files, in order.
+     */
+    static long sourceHash(File[] files) {
+        long hash = 1125899906842597L;
+        for (File file : files) {
+            hash = 31 * hash + file.getName().hashCode();
+            hash = 31 * hash + file.length();
+        }
+        return hash;
+    }
+
+    static long dataOffset(int headerLength) {
+        return align(PREAMBLE_SIZE + (long) headerLength);
+    }
+
+    static int rowSize(int doubles, int booleans) {
+        return (int) align(doubles * 8L + (booleans + 7) / 8);
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private static void pad(DataOutputStream os, long count) throws IOException {
+        for (long i = 0; i < count; i++) {
+            os.writeByte(0);
+        }
+    }
+
+    private static FrameSchema.DoubleAccessor[] packedDoubles(int[] firstRow) {
+        return Arrays.stream(FrameSchema.doubles())
+                .filter(field -> field.hasJsonPath() && firstRow[field.index] >= 0)
+                .toArray(FrameSchema.DoubleAccessor[]::new);
+    }
+
+    private static FrameSchema.BooleanAccessor[] packedBooleans(int[] firstRow) {
+        return Arrays.stream(FrameSchema.booleans())
+                .filter(field -> field.hasJsonPath() && firstRow[field.index] >= 0)
+                .toArray(FrameSchema.BooleanAccessor[]::new);
+    }
+}
@@ -0,0 +1,324 @@
+package dev.thatredox.chunky.animate.animation;
+
+import dev.thatredox.chunky.animate.reflection.BooleanJsonField;
+import dev.thatredox.chunky.animate.reflection.DoubleField;
+import dev.thatredox.chunky.animate.reflection.DoubleJsonField;
+import dev.thatredox.chunky.animate.reflection.DoubleSceneField;
+import se.llbit.chunky.renderer.scene.Scene;
+import se.llbit.json.JsonObject;
+import se.llbit.log.Log;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Field layout of {@link AnimationFrame}. This is resolved once when the class is loaded so frames can be
+ * built, copied and serialized through method handles instead of reflection.
+ */
+public final class FrameSchema {
+    private static final DoubleAccessor[] DOUBLES;
+    private static final BooleanAccessor[] BOOLEANS;
+    private static final DoubleAccessor[] INTERPOLATABLE;
+    private static final Map<String, DoubleAccessor> DOUBLES_BY_NAME = new HashMap<>();
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        ArrayList<DoubleAccessor> doubles = new ArrayList<>();
+        ArrayList<BooleanAccessor> booleans = new ArrayList<>();
+
+        for (Field field : AnimationFrame.class.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers())) continue;
+            try {
+                if (field.getType() == double.class) {
+                    DoubleAccessor accessor = new DoubleAccessor(doubles.size(), field, lookup);
+                    doubles.add(accessor);
+                    DOUBLES_BY_NAME.put(accessor.name, accessor);
+                } else if (field.getType() == boolean.class) {
+                    booleans.add(new BooleanAccessor(booleans.size(), field, lookup));
+                }
+            } catch (IllegalAccessException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        DOUBLES = doubles.toArray(new DoubleAccessor[0]);
+        BOOLEANS = booleans.toArray(new BooleanAccessor[0]);
+        INTERPOLATABLE = doubles.stream()
+                .filter(accessor -> accessor.info != null)
+                .sorted(FrameSchema::compareSortOrder)
+                .toArray(DoubleAccessor[]::new);
+    }
+
+    private FrameSchema() {
+    }
+
+    /**
+     * All {@code double} fields, indexed by {@link DoubleAccessor#index}.
+     */
+    public static DoubleAccessor[] doubles() {
+        return DOUBLES;
+    }
+
+    /**
+     * All {@code boolean} fields, indexed by {@link BooleanAccessor#index}.
+     */
+    public static BooleanAccessor[] booleans() {
+        return BOOLEANS;
+    }
+
+    /**
+     * Fields annotated with {@link DoubleField}, in display order.
+     */
+    public static DoubleAccessor[] interpolatable() {
+        return INTERPOLATABLE;
+    }
+
+    /**
+     * Find a {@code double} field by its Java field name.
+     *
+     * @return The accessor or null if there is no such field.
+     */
+    public static DoubleAccessor doubleByName(String name) {
+        return DOUBLES_BY_NAME.get(name);
+    }
+
+    private static int compareSortOrder(DoubleAccessor o1, DoubleAccessor o2) {
+        String fieldName1 = o1.name;
+        String fieldName2 = o2.name;
+
+        String secondaryCompare1 = "";
+        String secondaryCompare2 = "";
+
+        String[] parts;
+
+        parts = o1.info.sortOrder().split("\\.");
+        if (parts.length == 2) {
+            fieldName1 = parts[0];
+            secondaryCompare1 = parts[1];
+        }
+
+        parts = o2.info.sortOrder().split("\\.");
+        if (parts.length == 2) {
+            fieldName2 = parts[0];
+            secondaryCompare2 = parts[1];
+        }
+
+        if (fieldName1.equals(fieldName2)) {
+            return secondaryCompare1.compareTo(secondaryCompare2);
+        } else {
+            return fieldName1.compareTo(fieldName2);
+        }
+    }
+
+    private static String[] splitPath(String path) {
+        return path == null ? null : path.split("\\.");
+    }
+
+    /**
+     * Compile a dotted field path into a getter of type {@code (Scene)double}.
+     */
+    private static MethodHandle compileScenePath(MethodHandles.Lookup lookup, String path)
+            throws NoSuchFieldException, IllegalAccessException {
+        MethodHandle handle = MethodHandles.identity(Scene.class);
+        Class<?> type = Scene.class;
+        for (String level : path.split("\\.")) {
+            Field f = findField(type, level);
+            f.setAccessible(true);
+            MethodHandle getter = lookup.unreflectGetter(f).asType(MethodType.methodType(f.getType(), type));
+            handle = MethodHandles.filterReturnValue(handle, getter);
+            type = f.getType();
+        }
+        if (type != double.class) {
+            throw new NoSuchFieldException(path + " is not a double");
+        }
+        return handle;
+    }
+
+    private static Field findField(Class<?> type, String name) throws NoSuchFieldException {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            try {
+                return c.getDeclaredField(name);
+            } catch (NoSuchFieldException e) {
+                // Try the superclass
+            }
+        }
+        throw new NoSuchFieldException(type.getName() + "." + name);
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) return (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        return new RuntimeException(t);
+    }
+
+    public static final class DoubleAccessor {
+        public final int index;
+        public final String name;
+        public final Field field;
+
+        /**
+         * Display information. Null if the field is not interpolatable.
+         */
+        public final DoubleField info;
+
+        /**
+         * Dotted JSON path. Null if the field is not stored in scene JSON.
+         */
+        public final String jsonPath;
+        private final String[] jsonLevels;
+
+        /**
+         * Dotted path to the field in {@link Scene}. Null if the field cannot be read from a scene.
+         */
+        public final String scenePath;
+
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        private final MethodHandle sceneGetter;
+        private final Exception sceneError;
+
+        private DoubleAccessor(int index, Field field, MethodHandles.Lookup lookup) throws IllegalAccessException {
+            this.index = index;
+            this.name = field.getName();
+            this.field = field;
+            this.info = field.getAnnotation(DoubleField.class);
+
+            DoubleJsonField jsonField = field.getAnnotation(DoubleJsonField.class);
+            this.jsonPath = jsonField == null ? null : jsonField.value();
+            this.jsonLevels = splitPath(jsonPath);
+
+            DoubleSceneField sceneField = field.getAnnotation(DoubleSceneField.class);
+            this.scenePath = sceneField == null ? null : sceneField.value();
+
+            this.getter = lookup.unreflectGetter(field);
+            this.setter = lookup.unreflectSetter(field);
+
+            MethodHandle sceneGetter = null;
+            Exception sceneError = null;
+            if (scenePath != null) {
+                try {
+                    sceneGetter = compileScenePath(lookup, scenePath);
+                } catch (NoSuchFieldException | IllegalAccessException | RuntimeException e) {
+                    sceneError = e;
+                }
+            }
+            this.sceneGetter = sceneGetter;
+            this.sceneError = sceneError;
+        }
+
+        public double get(AnimationFrame frame) {
+            try {
+                return (double) getter.invokeExact(frame);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        public void set(AnimationFrame frame, double value) {
+            try {
+                setter.invokeExact(frame, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        public boolean hasScenePath() {
+            return scenePath != null;
+        }
+
+        public double fromScene(Scene scene) {
+            if (sceneGetter == null) {
+                Exception e = sceneError != null ? sceneError : new NoSuchFieldException(name);
+                Log.error(e);
+                throw new RuntimeException(e);
+            }
+            try {
+                return (double) sceneGetter.invokeExact(scene);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        public boolean hasJsonPath() {
+            return jsonLevels != null;
+        }
+
+        String[] jsonLevels() {
+            return jsonLevels;
+        }
+
+        /**
+         * Read this field from scene JSON.
+         *
+         * @param fallback Value to return if the field is missing or not a number.
+         */
+        public double fromJson(JsonObject json, double fallback) {
+            return AnimationFrame.resolveJsonField(json, jsonLevels).doubleValue(fallback);
+        }
+    }
+
+    public static final class BooleanAccessor {
+        public final int index;
+        public final String name;
+        public final Field field;
+
+        /**
+         * Dotted JSON path. Null if the field is not stored in scene JSON.
+         */
+        public final String jsonPath;
+        private final String[] jsonLevels;
+
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        private BooleanAccessor(int index, Field field, MethodHandles.Lookup lookup) throws IllegalAccessException {
+            this.index = index;
+            this.name = field.getName();
+            this.field = field;
+
+            BooleanJsonField jsonField = field.getAnnotation(BooleanJsonField.class);
+            this.jsonPath = jsonField == null ? null : jsonField.value();
+            this.jsonLevels = splitPath(jsonPath);
+
+            this.getter = lookup.unreflectGetter(field);
+            this.setter = lookup.unreflectSetter(field);
+        }
+
+        public boolean get(AnimationFrame frame) {
+            try {
+                return (boolean) getter.invokeExact(frame);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        public void set(AnimationFrame frame, boolean value) {
+            try {
+                setter.invokeExact(frame, value);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        public boolean hasJsonPath() {
+            return jsonLevels != null;
+        }
+
+        String[] jsonLevels() {
+            return jsonLevels;
+        }
+
+        /**
+         * Read this field from scene JSON.
+         *
+         * @param fallback Value to return if the field is missing or not a boolean.
+         */
+        public boolean fromJson(JsonObject json, boolean fallback) {
+            return AnimationFrame.resolveJsonField(json, jsonLevels).boolValue(fallback);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package dev.thatredox.chunky.animate.animation;
+
+/**
+ * An indexed sequence of animation frames.
+ */
+public interface FrameSource {
+    /**
+     * Number of frames in this source.
+     */
+    int size();
+
+    /**
+     * Number of frames this source will have once it is fully loaded.
+     */
+    default int expectedSize() {
+        return size();
+    }
+
+    /**
+     * Wait until frame {@code index} is available.
+     *
+     * @return True if the frame exists. False if the source ended before {@code index}.
+     */
+    default boolean awaitFrame(int index) throws InterruptedException {
+        return index < size();
+    }
+
+    /**
+     * Copy frame {@code index} into an existing frame.
+     */
+    void load(int index, AnimationFrame dest);
+
+    /**
+     * Copy frame {@code index} into a new frame.
+     */
+    default AnimationFrame get(int index) {
+        AnimationFrame frame = new AnimationFrame();
+        load(index, frame);
+        return frame;
+    }
+}
@@ -0,0 +1,213 @@
+package dev.thatredox.chunky.animate.animation;
+
+import se.llbit.chunky.renderer.scene.Scene;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Column store of animation frames. Every {@code double} field of {@link AnimationFrame} is kept in its own
+ * {@code double[]} and every {@code boolean} field in its own {@link BitSet}, indexed by frame number.
+ */
+public class FrameTable implements FrameSource {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private double[][] doubleColumns;
+    private final BitSet[] booleanColumns;
+    private int capacity;
+    private int size = 0;
+
+    public FrameTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public FrameTable(int capacity) {
+        this.capacity = Math.max(capacity, 1);
+        this.doubleColumns = new double[FrameSchema.doubles().length][this.capacity];
+        this.booleanColumns = new BitSet[FrameSchema.booleans().length];
+        Arrays.setAll(booleanColumns, i -> new BitSet(this.capacity));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+        for (BitSet column : booleanColumns) {
+            column.clear();
+        }
+    }
+
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity <= capacity) return;
+        int newCapacity = Math.max(minCapacity, capacity + (capacity >> 1));
+        double[][] columns = new double[doubleColumns.length][];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = Arrays.copyOf(doubleColumns[i], newCapacity);
+        }
+        doubleColumns = columns;
+        capacity = newCapacity;
+    }
+
+    /**
+     * Append a frame to the end of the table.
+     *
+     * @return The index of the new row.
+     */
+    public int add(AnimationFrame frame) {
+        ensureCapacity(size + 1);
+        int row = size;
+        store(row, frame);
+        size = row + 1;
+        return row;
+    }
+
+    /**
+     * Append {@code count} copies of a frame to the end of the table.
+     *
+     * @return The index of the first new row.
+     */
+    public int addRows(int count, AnimationFrame frame) {
+        ensureCapacity(size + count);
+        int first = size;
+        int end = first + count;
+        for (FrameSchema.DoubleAccessor field : FrameSchema.doubles()) {
+            Arrays.fill(doubleColumns[field.index], first, end, field.get(frame));
+        }
+        for (FrameSchema.BooleanAccessor field : FrameSchema.booleans()) {
+            booleanColumns[field.index].set(first, end, field.get(frame));
+        }
+        size = end;
+        return first;
+    }
+
+    /**
+     * Overwrite an existing row.
+     */
+    public void set(int row, AnimationFrame frame) {
+        checkRow(row);
+        store(row, frame);
+    }
+
+    /**
+     * Copy a row into an existing frame.
+     */
+    @Override
+    public void load(int row, AnimationFrame dest) {
+        checkRow(row);
+        for (FrameSchema.DoubleAccessor field : FrameSchema.doubles()) {
+            field.set(dest, doubleColumns[field.index][row]);
+        }
+        for (FrameSchema.BooleanAccessor field : FrameSchema.booleans()) {
+            field.set(dest, booleanColumns[field.index].get(row));
+        }
+    }
+
+    /**
+     * Copy a row into a new frame.
+     */
+    @Override
+    public AnimationFrame get(int row) {
+        AnimationFrame frame = new AnimationFrame();
+        load(row, frame);
+        return frame;
+    }
+
+    public double getDouble(int row, int field) {
+        checkRow(row);
+        return doubleColumns[field][row];
+    }
+
+    public void setDouble(int row, int field, double value) {
+        checkRow(row);
+        doubleColumns[field][row] = value;
+    }
+
+    public boolean getBoolean(int row, int field) {
+        checkRow(row);
+        return booleanColumns[field].get(row);
+    }
+
+    public void setBoolean(int row, int field, boolean value) {
+        checkRow(row);
+        booleanColumns[field].set(row, value);
+    }
+
+    /**
+     * Get the backing array of a {@code double} column. Only the first {@link #size()} entries are valid and the
+     * array is replaced when the table grows.
+     */
+    public double[] doubleColumn(int field) {
+        return doubleColumns[field];
+    }
+
+    /**
+     * Create a reusable view of the rows in this table.
+     */
+    public Row row(int row) {
+        return new Row().at(row);
+    }
+
+    private void store(int row, AnimationFrame frame) {
+        for (FrameSchema.DoubleAccessor field : FrameSchema.doubles()) {
+            doubleColumns[field.index][row] = field.get(frame);
+        }
+        for (FrameSchema.BooleanAccessor field : FrameSchema.booleans()) {
+            booleanColumns[field.index].set(row, field.get(frame));
+        }
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Frame " + row + " out of bounds for " + size + " frames");
+        }
+    }
+
+    /**
+     * Cursor over a single row. One view can be moved between rows to apply frames without allocating.
+     */
+    public class Row {
+        private final AnimationFrame frame = new AnimationFrame();
+        private int index = -1;
+
+        private Row() {
+        }
+
+        public Row at(int row) {
+            checkRow(row);
+            this.index = row;
+            return this;
+        }
+
+        public int index() {
+            return index;
+        }
+
+        public double getDouble(int field) {
+            return FrameTable.this.getDouble(index, field);
+        }
+
+        public boolean getBoolean(int field) {
+            return FrameTable.this.getBoolean(index, field);
+        }
+
+        /**
+         * Get the frame at the current row. The returned frame is owned by this view and is overwritten when the
+         * view is moved.
+         */
+        public AnimationFrame frame() {
+            load(index, frame);
+            return frame;
+        }
+
+        public void apply(Scene scene) {
+            frame().apply(scene, index);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package dev.thatredox.chunky.animate.animation;
+
+import org.apache.commons.math3.analysis.polynomials.PolynomialSplineFunction;
+import se.llbit.math.QuickMath;
+
+import java.util.Map;
+
+/**
+ * Frames sampled from keyframe splines on demand. Nothing is stored per frame, so memory use does not depend on the
+ * length of the animation.
+ */
+public class InterpolatedFrameSource implements FrameSource {
+    private final AnimationFrame base;
+    private final CompiledSplines splines;
+    private final double framerate;
+    private final double endTime;
+    private final int numFrames;
+
+    /**
+     * @param interps   Splines by field name, from {@link AnimationUtils#interpolateKeyframes}.
+     * @param base      Values for fields without a spline. This frame is copied.
+     * @param framerate Frames per second.
+     * @param endTime   Time of the last keyframe.
+     */
+    public InterpolatedFrameSource(Map<String, PolynomialSplineFunction> interps, AnimationFrame base,
+                                   double framerate, double endTime) {
+        this.base = new AnimationFrame(base);
+        this.splines = new CompiledSplines(interps, endTime);
+        this.framerate = framerate;
+        this.endTime = endTime;
+        this.numFrames = Math.max((int) (endTime * framerate) + 1, 0);
+    }
+
+    @Override
+    public int size() {
+        return numFrames;
+    }
+
+    public double getFramerate() {
+        return framerate;
+    }
+
+    /**
+     * Animation time of a frame.
+     */
+    public double timeOf(int index) {
+        return QuickMath.clamp(index / framerate, 0, endTime);
+    }
+
+    @Override
+    public void load(int index, AnimationFrame dest) {
+        if (index < 0 || index >= numFrames) {
+            throw new IndexOutOfBoundsException("Frame " + index + " out of bounds for " + numFrames + " frames");
+        }
+        dest.set(base);
+        splines.evaluate(timeOf(index), dest);
+    }
+}
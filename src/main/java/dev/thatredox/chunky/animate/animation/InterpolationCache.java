@@ -0,0 +1,92 @@
+package dev.thatredox.chunky.animate.animation;
+
+import it.unimi.dsi.fastutil.doubles.Double2ObjectSortedMap;
+import org.apache.commons.math3.analysis.interpolation.SplineInterpolator;
+import org.apache.commons.math3.analysis.polynomials.PolynomialSplineFunction;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the splines of a keyframe set up to date. On every update the knots of each field are compared against the
+ * knots it was last fitted with, and only fields touched by an edit are refitted.
+ */
+public class InterpolationCache {
+    private final Map<String, FieldFit> fits = new HashMap<>();
+    private Map<String, PolynomialSplineFunction> splines = Collections.emptyMap();
+    private double endTime = 0;
+
+    /**
+     * Bring the cache up to date with a keyframe set.
+     *
+     * @return Splines by field name. The returned map is not modified by later updates.
+     */
+    public synchronized Map<String, PolynomialSplineFunction> update(Double2ObjectSortedMap<AnimationKeyFrame> keyframes) {
+        if (keyframes.isEmpty()) {
+            invalidate();
+            return splines;
+        }
+
+        AnimationUtils.KeyframeSnapshot snapshot = new AnimationUtils.KeyframeSnapshot(keyframes);
+        boolean changed = false;
+        for (FrameSchema.DoubleAccessor field : FrameSchema.interpolatable()) {
+            double[][] knots = AnimationUtils.fieldKnots(field.name, snapshot);
+            FieldFit fit = fits.get(field.name);
+            if (knots == null) {
+                changed |= fits.remove(field.name) != null;
+            } else if (fit == null || !fit.matches(knots)) {
+                fits.put(field.name, new FieldFit(knots));
+                changed = true;
+            }
+        }
+
+        endTime = snapshot.endTime;
+        if (changed) {
+            Map<String, PolynomialSplineFunction> out = new HashMap<>();
+            fits.forEach((name, fit) -> out.put(name, fit.spline));
+            splines = Collections.unmodifiableMap(out);
+        }
+        return splines;
+    }
+
+    /**
+     * Drop every fitted spline.
+     */
+    public synchronized void invalidate() {
+        fits.clear();
+        splines = Collections.emptyMap();
+        endTime = 0;
+    }
+
+    /**
+     * Splines from the last update.
+     */
+    public synchronized Map<String, PolynomialSplineFunction> getSplines() {
+        return splines;
+    }
+
+    /**
+     * Time of the last keyframe at the last update.
+     */
+    public synchronized double getEndTime() {
+        return endTime;
+    }
+
+    private static class FieldFit {
+        final double[] times;
+        final double[] values;
+        final PolynomialSplineFunction spline;
+
+        FieldFit(double[][] knots) {
+            this.times = knots[0];
+            this.values = knots[1];
+            this.spline = new SplineInterpolator().interpolate(times, values);
+        }
+
+        boolean matches(double[][] knots) {
+            return Arrays.equals(times, knots[0]) && Arrays.equals(values, knots[1]);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package dev.thatredox.chunky.animate.animation;
+
+import se.llbit.chunky.renderer.scene.Scene;
+import se.llbit.log.Log;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Frames read from a {@link FramePack}. The pack is memory mapped when it is opened, so any frame can be read in
+ * constant time without parsing.
+ */
+public class PackedFrameSource implements FrameSource {
+    private final AnimationFrame base;
+    private final int numFrames;
+    private final int rowSize;
+    private final int rowsPerSegment;
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Packed columns. Columns for fields which are not in the schema have a null accessor.
+     */
+    private final FrameSchema.DoubleAccessor[] doubleFields;
+    private final int[] doubleFirstRow;
+    private final FrameSchema.BooleanAccessor[] booleanFields;
+    private final int[] booleanFirstRow;
+
+    public PackedFrameSource(File file, Scene scene) throws IOException {
+        this(file, new AnimationFrame(scene));
+    }
+
+    /**
+     * @param base Frame to take fields from which are not set by the pack.
+     */
+    public PackedFrameSource(File file, AnimationFrame base) throws IOException {
+        this.base = new AnimationFrame(base);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer preamble = ByteBuffer.allocate(FramePack.PREAMBLE_SIZE);
+            readFully(channel, preamble, 0);
+            if (preamble.getInt() != FramePack.MAGIC) {
+                throw new IOException("Not a frame pack: " + file);
+            }
+            int version = preamble.getInt();
+            if (version != FramePack.VERSION) {
+                throw new IOException("Unsupported frame pack version " + version + ": " + file);
+            }
+            int headerLength = preamble.getInt();
+
+            ByteBuffer headerBytes = ByteBuffer.allocate(headerLength);
+            readFully(channel, headerBytes, FramePack.PREAMBLE_SIZE);
+            DataInputStream header = new DataInputStream(new ByteArrayInputStream(headerBytes.array()));
+
+            int doubleCount = header.readInt();
+            doubleFields = new FrameSchema.DoubleAccessor[doubleCount];
+            doubleFirstRow = new int[doubleCount];
+            for (int i = 0; i < doubleCount; i++) {
+                String path = header.readUTF();
+                doubleFirstRow[i] = header.readInt();
+                for (FrameSchema.DoubleAccessor field : FrameSchema.doubles()) {
+                    if (path.equals(field.jsonPath)) doubleFields[i] = field;
+                }
+                if (doubleFields[i] == null) Log.warn("Ignoring unknown frame pack field: " + path);
+            }
+
+            int booleanCount = header.readInt();
+            booleanFields = new FrameSchema.BooleanAccessor[booleanCount];
+            booleanFirstRow = new int[booleanCount];
+            for (int i = 0; i < booleanCount; i++) {
+                String path = header.readUTF();
+                booleanFirstRow[i] = header.readInt();
+                for (FrameSchema.BooleanAccessor field : FrameSchema.booleans()) {
+                    if (path.equals(field.jsonPath)) booleanFields[i] = field;
+                }
+                if (booleanFields[i] == null) Log.warn("Ignoring unknown frame pack field: " + path);
+            }
+            numFrames = header.readInt();
+
+            long dataOffset = FramePack.dataOffset(headerLength);
+            rowSize = FramePack.rowSize(doubleCount, booleanCount);
+            if (channel.size() < dataOffset + (long) numFrames * rowSize) {
+                throw new IOException("Frame pack is truncated: " + file);
+            }
+
+            // A single mapping is limited to 2 GiB, so larger packs are split on row boundaries
+            rowsPerSegment = Math.max(Integer.MAX_VALUE / Math.max(rowSize, 1), 1);
+            segments = new MappedByteBuffer[(numFrames + rowsPerSegment - 1) / rowsPerSegment];
+            for (int s = 0; s < segments.length; s++) {
+                int rows = Math.min(rowsPerSegment, numFrames - s * rowsPerSegment);
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        dataOffset + (long) s * rowsPerSegment * rowSize, (long) rows * rowSize);
+            }
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            int read = channel.read(dst, position + dst.position());
+            if (read < 0) throw new EOFException();
+        }
+        dst.flip();
+    }
+
+    @Override
+    public int size() {
+        return numFrames;
+    }
+
+    @Override
+    public void load(int index, AnimationFrame dest) {
+        if (index < 0 || index >= numFrames) {
+            throw new IndexOutOfBoundsException("Frame " + index + " out of bounds for " + numFrames + " frames");
+        }
+        dest.set(base);
+
+        ByteBuffer segment = segments[index / rowsPerSegment];
+        int offset = (index % rowsPerSegment) * rowSize;
+        for (int i = 0; i < doubleFields.length; i++) {
+            if (doubleFields[i] != null && index >= doubleFirstRow[i]) {
+                doubleFields[i].set(dest, segment.getDouble(offset + i * 8));
+            }
+        }
+        int maskOffset = offset + doubleFields.length * 8;
+        for (int i = 0; i < booleanFields.length; i++) {
+            if (booleanFields[i] != null && index >= booleanFirstRow[i]) {
+                booleanFields[i].set(dest, (segment.get(maskOffset + (i >> 3)) & (1 << (i & 7))) != 0);
+            }
+        }
+    }
+}
@@ -3,6 +3,14 @@ package dev.thatredox.chunky.animate.plugin;
 import dev.thatredox.chunky.animate.animation.AnimationFrame;
 import dev.thatredox.chunky.animate.animation.AnimationKeyFrame;
 import dev.thatredox.chunky.animate.animation.AnimationUtils;
+import dev.thatredox.chunky.animate.animation.FolderFrameLoader;
+import dev.thatredox.chunky.animate.animation.FramePack;
+import dev.thatredox.chunky.animate.animation.FrameSource;
+import dev.thatredox.chunky.animate.animation.FrameTable;
+import dev.thatredox.chunky.animate.animation.PackedFrameSource;
+import dev.thatredox.chunky.animate.render.FrameDeduplicator;
+import dev.thatredox.chunky.animate.render.FrameWriter;
+import dev.thatredox.chunky.animate.util.AnimationEvents;
 import dev.thatredox.chunky.animate.util.ObservableValue;
 import it.unimi.dsi.fastutil.doubles.Double2ObjectRBTreeMap;
 import it.unimi.dsi.fastutil.doubles.Double2ObjectSortedMap;
@@ -12,22 +20,43 @@ import se.llbit.chunky.renderer.RenderMode;
 import se.llbit.chunky.renderer.RenderStatusListener;
 import se.llbit.chunky.renderer.scene.Scene;
 import se.llbit.log.Log;
-import se.llbit.util.TaskTracker;
 
 import java.io.*;
-import java.util.*;
 
 public class AnimationManager {
     public final Object renderUpdateEvent = new Object();
 
+    private final FrameWriter frameWriter = new FrameWriter(1, 2);
+    private final FrameDeduplicator deduplicator = new FrameDeduplicator();
+    private volatile AnimationFrame renderingFrame = null;
+
     private Chunky chunky = null;
-    private boolean animating = false;
+
+    /**
+     * States of a frame on the animation driver. Saving is not a state of the driver, it happens on the frame writer
+     * threads and overlaps the render of the next frame.
+     */
+    private enum State {
+        IDLE,
+        /** Waiting for the next frame and applying it to the scene. */
+        APPLY,
+        /** Waiting for the scene to reach its target SPP. */
+        RENDER,
+        /** Render paused, the frame is copied and queued to be saved. */
+        SNAPSHOT
+    }
+
+    private final Object driverLock = new Object();
+    // Guarded by driverLock
+    private State state = State.IDLE;
+    private volatile Thread driver = null;
+
     public final Double2ObjectSortedMap<AnimationKeyFrame> animationKeyFrames = new Double2ObjectRBTreeMap<>();
 
     private final ObservableValue<Integer> currentFrameValue = new ObservableValue<>(0);
     public final ObservableValue.ObservableInterface<Integer> currentFrame = currentFrameValue.getObservableInterface();
 
-    private final ArrayList<AnimationFrame> animationFrames = new ArrayList<>();
+    private volatile FrameSource animationFrames = new FrameTable();
     private final ObservableValue<Integer> totalFramesValue = new ObservableValue<>(0);
     public final ObservableValue.ObservableInterface<Integer> totalFrames =  totalFramesValue.getObservableInterface();
 
@@ -64,7 +93,7 @@ public class AnimationManager {
         AnimationUtils.loadKeyframes(in, animationKeyFrames);
     }
 
-    public void saveFrame(int count) {
+    private File frameFile(int count) {
         Scene scene = chunky.getSceneManager().getScene();
 
         File baseDir = chunky.getRenderController().getContext().getSceneDirectory();
@@ -74,8 +103,13 @@ public class AnimationManager {
                 File.separator,
                 count,
                 scene.getOutputMode().getExtension());
+        return new File(path);
+    }
 
-        File saveFile = new File(path);
+    public void saveFrame(int count) {
+        Scene scene = chunky.getSceneManager().getScene();
+
+        File saveFile = frameFile(count);
         File parentDir = saveFile.getParentFile();
         if (!parentDir.exists() && !saveFile.getParentFile().mkdirs()) {
             Log.error("Failed to create output directory: " + saveFile.getParentFile().getPath());
@@ -91,82 +125,214 @@ public class AnimationManager {
             return;
         }
 
-        scene.saveFrame(saveFile, TaskTracker.NONE);
+        AnimationFrame frame = renderingFrame;
+        if (frame != null) {
+            deduplicator.add(frame, saveFile, scene.getSpp());
+        }
+        try {
+            frameWriter.write(scene, count, saveFile);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
+    /**
+     * Called by the render status listener once the scene has reached its target SPP. Pauses the render and hands the
+     * frame back to the animation driver, so the render thread is not held up by saving or applying frames.
+     * <p>
+     * The listener may report the SPP of the previous frame after the next frame has started rendering, so the SPP is
+     * checked again on the scene, which a refresh resets.
+     */
     public void frameComplete() {
-        if (animating) {
-            chunky.getSceneManager().getScene().pauseRender();
-
-            int frameNumber = this.currentFrameValue.getValue();
-            saveFrame(frameNumber);
-            currentFrameValue.setValue(frameNumber+1);
-
-            runUntilRender();
+        Scene scene = chunky.getSceneManager().getScene();
+        synchronized (scene) {
+            synchronized (driverLock) {
+                if (state != State.RENDER || scene.getSpp() < scene.getTargetSpp()) return;
+                scene.pauseRender();
+                state = State.SNAPSHOT;
+                driverLock.notifyAll();
+            }
         }
     }
 
     public void startAnimation() {
-        this.animating = true;
+        stopAnimation();
         this.currentFrameValue.setValue(0);
-        runUntilRender();
+
+        Thread thread = new Thread(this::drive, "Animation Driver");
+        thread.setDaemon(true);
+        synchronized (driverLock) {
+            driver = thread;
+            state = State.APPLY;
+        }
+        thread.start();
     }
 
     public void stopAnimation() {
-        this.animating = false;
+        Thread thread;
+        synchronized (driverLock) {
+            thread = driver;
+            driver = null;
+            driverLock.notifyAll();
+        }
+        // Wakes a driver waiting for frames to load or for a frame writer slot
+        if (thread != null) thread.interrupt();
     }
 
     public boolean isAnimating() {
-        return this.animating;
+        return this.driver != null;
     }
 
-    public void runUntilRender() {
+    /**
+     * Animation driver loop. Each frame goes through the states apply, render and snapshot on this thread, after which
+     * the frame writer saves it in the background while the next frame renders.
+     */
+    private void drive() {
         Scene scene = chunky.getSceneManager().getScene();
-        synchronized (scene) {
-            scene.haltRender();
-            scene.forceReset();
-
-            if (currentFrameValue.getValue() < animationFrames.size()) {
-                AnimationFrame frame = animationFrames.get(currentFrameValue.getValue());
-                if (frame != null) {
-                    frame.apply(scene);
-                    scene.startRender();
-                    return;
+        FrameSource frames = animationFrames;
+        int frameNumber = 0;
+        // Frame last applied by this driver. Starts out empty, since the user may have changed the scene
+        AnimationFrame appliedFrame = null;
+        deduplicator.clear();
+        try {
+            while (true) {
+                AnimationFrame frame = null;
+                // Frames with the same parameters as an earlier frame reuse its output instead of being rendered
+                while (frames.awaitFrame(frameNumber)) {
+                    frame = frames.get(frameNumber);
+                    FrameDeduplicator.Entry original = deduplicator.find(frame);
+                    if (original == null || !duplicateFrame(original, frameNumber)) break;
+                    frame = null;
+                    frameNumber++;
+                    currentFrameValue.setValue(frameNumber);
+                }
+                if (frame == null) break;
+
+                AnimationEvents.FrameRender event = new AnimationEvents.FrameRender(frameNumber);
+                synchronized (scene) {
+                    synchronized (driverLock) {
+                        if (driver != Thread.currentThread()) return;
+                        state = State.RENDER;
+                    }
+                    renderingFrame = frame;
+                    // A refresh resets the samples when the render resumes, without halting the render first. A
+                    // frame with the same parameters keeps the samples of the previous frame, which are just as
+                    // valid for it.
+                    boolean changed = appliedFrame == null || !frame.sameParameters(appliedFrame);
+                    frame.applyDelta(scene, appliedFrame, frameNumber);
+                    appliedFrame = frame;
+                    event.begin();
+                    if (changed) {
+                        scene.refresh();
+                        scene.startRender();
+                    } else if (scene.getSpp() < scene.getTargetSpp()) {
+                        scene.startRender();
+                    } else {
+                        synchronized (driverLock) {
+                            state = State.SNAPSHOT;
+                        }
+                    }
+                }
+
+                synchronized (driverLock) {
+                    while (state == State.RENDER && driver == Thread.currentThread()) {
+                        driverLock.wait();
+                    }
+                    if (driver != Thread.currentThread()) return;
+                }
+
+                event.spp = scene.getSpp();
+                event.targetSpp = scene.getTargetSpp();
+                event.commit();
+                saveFrame(frameNumber);
+                frameNumber++;
+                currentFrameValue.setValue(frameNumber);
+                synchronized (driverLock) {
+                    if (driver != Thread.currentThread()) return;
+                    state = State.APPLY;
+                }
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        } catch (RuntimeException e) {
+            Log.error("Animation failed at frame " + frameNumber, e);
+        } finally {
+            synchronized (driverLock) {
+                if (driver == Thread.currentThread()) {
+                    driver = null;
+                    state = State.IDLE;
                 }
             }
         }
+    }
 
-        this.animating = false;
+    /**
+     * Save frame {@code count} as a duplicate of an earlier frame. Like {@link #saveFrame(int)}, an existing output file
+     * is never replaced.
+     *
+     * @return False if the frame has to be rendered instead.
+     */
+    private boolean duplicateFrame(FrameDeduplicator.Entry original, int count) throws InterruptedException {
+        File saveFile = frameFile(count);
+        if (saveFile.exists()) {
+            Log.error("File already exists: " + saveFile.getPath());
+            return true;
+        }
+        // The original may still be waiting to be written
+        frameWriter.flush();
+        try {
+            FrameDeduplicator.duplicate(original.output, saveFile, true);
+            return true;
+        } catch (IOException e) {
+            Log.warn("Failed to duplicate " + original.output.getName() + ", rendering instead", e);
+            return false;
+        }
     }
 
     public void fromFolder(File folder) {
-        animating = false;
+        stopAnimation();
         currentFrameValue.setValue(0);
-        animationFrames.clear();
+        animationFrames = new FrameTable();
         totalFramesValue.setValue(0);
+        if (folder == null) return;
+
+        File pack = FramePack.findPack(folder);
+        if (pack != null) {
+            try {
+                FrameSource frames = new PackedFrameSource(pack, chunky.getSceneManager().getScene());
+                animationFrames = frames;
+                totalFramesValue.setValue(frames.size());
+                return;
+            } catch (IOException e) {
+                Log.warn("Failed to load frame pack, loading frames instead", e);
+            }
+        }
 
-        AnimationUtils.loadFramesFromFolder(
-                folder,
-                animationFrames,
-                chunky.getSceneManager().getScene()
-        );
-
-        totalFramesValue.setValue(animationFrames.size());
+        FolderFrameLoader loader = new FolderFrameLoader(folder, chunky.getSceneManager().getScene());
+        animationFrames = loader;
+        loader.setProgressListener((progress, total) -> {
+            // Stop loading if other frames have been loaded since
+            if (animationFrames != loader) return false;
+            if (progress % 64 == 0 || progress == total) {
+                totalFramesValue.setValue(loader.size());
+            }
+            return true;
+        }).start();
     }
 
     public void fromKeyFrames(double framerate) {
-        animating = false;
+        stopAnimation();
         currentFrameValue.setValue(0);
-        animationFrames.clear();
+        animationFrames = new FrameTable();
         totalFramesValue.setValue(0);
 
-        AnimationUtils.loadFramesFromKeyframes(
+        FrameSource frames = AnimationUtils.framesFromKeyframes(
                 animationKeyFrames,
                 framerate,
-                animationFrames,
                 chunky.getSceneManager().getScene()
         );
+        animationFrames = frames;
 
-        totalFramesValue.setValue(animationFrames.size());
+        totalFramesValue.setValue(frames.size());
     }
 }
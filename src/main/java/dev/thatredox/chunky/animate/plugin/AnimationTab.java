@@ -1,5 +1,6 @@
 package dev.thatredox.chunky.animate.plugin;
 
+import dev.thatredox.chunky.animate.util.EtaEstimator;
 import dev.thatredox.chunky.animate.util.ObservableValue;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
@@ -20,7 +21,9 @@ import java.io.File;
 
 public class AnimationTab implements RenderControlsTab {
     private final VBox box;
-    private long renderStart = 0;
+    private final EtaEstimator eta = new EtaEstimator();
+    private long lastFrameTime = 0;
+    private int lastFrame = 0;
     private SnapshotControl prevControl = null;
     private boolean needSave = true;
 
@@ -102,14 +105,23 @@ public class AnimationTab implements RenderControlsTab {
             int totalFrames = manager.totalFrames.getValue();
             long currentTime = System.currentTimeMillis();
 
-            if (currentFrame == 0) {
-                renderStart = System.currentTimeMillis();
+            synchronized (eta) {
+                if (currentFrame == 0) {
+                    eta.reset();
+                    lastFrame = 0;
+                    lastFrameTime = currentTime;
+                } else if (currentFrame > lastFrame) {
+                    eta.add((currentTime - lastFrameTime) / (currentFrame - lastFrame));
+                    lastFrame = currentFrame;
+                    lastFrameTime = currentTime;
+                }
             }
+            long etaMillis = eta.remainingMillis(totalFrames - currentFrame);
 
             Platform.runLater(() -> {
                 progressLabel.setText(String.format("Frame %d / %d", currentFrame, totalFrames));
-                if (manager.isAnimating() && manager.currentFrame.getValue() > 1) {
-                    long etaSeconds = ((totalFrames - currentFrame) * (currentTime - renderStart)) / (currentFrame * 1000L);
+                if (manager.isAnimating() && manager.currentFrame.getValue() > 1 && etaMillis >= 0) {
+                    long etaSeconds = etaMillis / 1000;
                     int etaMinutes = (int) ((etaSeconds / 60) % 60);
                     int etaHours = (int) (etaSeconds / 3600);
                     etaLabel.setText(String.format("ETA: %02d:%02d:%02d", etaHours, etaMinutes, etaSeconds % 60));
@@ -3,9 +3,9 @@ package dev.thatredox.chunky.animate.plugin;
 import dev.thatredox.chunky.animate.animation.AnimationFrame;
 import dev.thatredox.chunky.animate.animation.AnimationKeyFrame;
 import dev.thatredox.chunky.animate.animation.AnimationUtils;
+import dev.thatredox.chunky.animate.animation.FrameSchema;
+import dev.thatredox.chunky.animate.animation.InterpolationCache;
 import dev.thatredox.chunky.animate.reflection.DoubleField;
-import dev.thatredox.chunky.animate.reflection.DoubleJsonField;
-import dev.thatredox.chunky.animate.reflection.DoubleSceneField;
 import it.unimi.dsi.fastutil.doubles.*;
 import javafx.application.Platform;
 import javafx.beans.property.ReadOnlyDoubleWrapper;
@@ -14,6 +14,8 @@ import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
 import javafx.scene.control.*;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.FileChooser;
@@ -26,31 +28,41 @@ import se.llbit.log.Log;
 
 import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Field;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class KeyFrameTab implements RenderControlsTab {
+    /**
+     * Number of evenly spaced times to pre-render previews for.
+     */
+    private static final int PREVIEW_IMAGES = 32;
+    private static final int PREVIEW_WIDTH = 320;
+
     private final AnimationManager manager;
     private final VBox box;
     private final TableView<Double2ObjectMap.Entry<AnimationKeyFrame>> keyframeTable;
 
     private final DoubleTextField[] keyframeFields =
-            new DoubleTextField[AnimationKeyFrame.interpolatableFields().length];
+            new DoubleTextField[FrameSchema.interpolatable().length];
 
     private final TextField keyframeNameField = new TextField();
     private final DoubleTextField keyframeTimeField = new DoubleTextField();
 
     private final ExecutorService calculationExecutor = Executors.newSingleThreadExecutor();
-    private Map<String, PolynomialSplineFunction> interpCache = null;
-    private double interpMaxTime;
-    private long previewStart = -1;
+    private final InterpolationCache interpolation = new InterpolationCache();
+    private volatile Map<String, PolynomialSplineFunction> interpCache = null;
+    private volatile double interpMaxTime;
+    private final PreviewCache previewCache = new PreviewCache(PREVIEW_WIDTH, PreviewCache.DEFAULT_IMAGES);
+    private volatile long previewHash;
+    private final PreviewScheduler previewScheduler;
+    private final PreviewPlayer previewPlayer = new PreviewPlayer();
 
     private Scene scene = null;
 
     public KeyFrameTab(AnimationManager manager) {
         this.manager = manager;
+        this.previewScheduler = new PreviewScheduler(manager.renderUpdateEvent, this::applyPreview);
         box = new VBox(10.0);
         box.setPadding(new Insets(10.0, 0, 0, 10.0));
 
@@ -158,87 +170,71 @@ public class KeyFrameTab implements RenderControlsTab {
             timeAdjuster.setRange(0, 1);
             timeAdjuster.clampBoth();
             timeAdjuster.setTooltip("Preview an animation time.");
+            ImageView previewImage = new ImageView();
+            // Keep the same size while the player changes resolution
+            previewImage.setFitWidth(PREVIEW_WIDTH);
+            previewImage.setPreserveRatio(true);
 
             timeAdjuster.setOnMouseEntered(event -> {
                 if (manager.animationKeyFrames.size() > 0) {
                     timeAdjuster.setRange(0, manager.animationKeyFrames.lastDoubleKey());
                     calculationExecutor.submit(() -> {
-                        this.interpMaxTime = manager.animationKeyFrames.lastDoubleKey();
-                        this.interpCache = AnimationUtils.interpolateKeyframes(manager.animationKeyFrames, (progress, total) -> true);
+                        this.interpCache = interpolation.update(manager.animationKeyFrames);
+                        this.interpMaxTime = interpolation.getEndTime();
+                        if (scene != null) {
+                            long hash = PreviewCache.hash(manager.animationKeyFrames, interpCache, scene);
+                            if (hash != previewHash) {
+                                previewHash = hash;
+                                previewCache.prerender(scene, interpCache, interpMaxTime, hash, PREVIEW_IMAGES);
+                            }
+                        }
                     });
                 }
             });
-            timeAdjuster.valueProperty().addListener((observable, oldValue, newValue) -> calculationExecutor.submit(() -> {
-                if (this.interpCache != null && scene != null) {
-                    AnimationFrame frame = new AnimationFrame(scene);
-                    frame = AnimationUtils.applyInterpolation(interpCache,
-                            (Double) newValue, this.interpMaxTime, frame);
-                    frame.apply(scene);
-                    scene.refresh();
-                }
-            }));
+            timeAdjuster.valueProperty().addListener((observable, oldValue, newValue) -> {
+                // Show the closest pre-rendered image until the scene has caught up
+                Image cached = previewCache.get(previewHash, newValue.doubleValue(), interpMaxTime, PREVIEW_IMAGES);
+                if (cached != null) previewImage.setImage(cached);
+            });
+            timeAdjuster.valueProperty().addListener((observable, oldValue, newValue) -> {
+                // The player shows its own frames, so leave the scene alone while it runs
+                if (!previewPlayer.isPlaying()) previewScheduler.request(newValue.doubleValue());
+            });
             box.getChildren().add(timeAdjuster);
+            box.getChildren().add(previewImage);
 
+            Label previewStats = new Label();
             Button previewPlayPause = new Button("Play Preview");
             previewPlayPause.setOnAction(event -> {
-                if (this.previewStart == -1) {
-                    Platform.runLater(() -> previewPlayPause.setText("Pause Preview"));
-                    this.previewStart = System.currentTimeMillis();
-                    calculationExecutor.submit(() -> {
-                        double currentTime;
-                        do {
-                            long previewStart = this.previewStart;
-                            if (previewStart == -1) {
-                                break;
-                            }
-
-                            currentTime = (System.currentTimeMillis() - previewStart) / 1000.0;
-                            if (currentTime >= this.interpMaxTime) {
-                                currentTime = this.interpMaxTime;
-                            }
-
-                            if (this.interpCache == null || scene == null) {
-                                break;
-                            }
-
-                            double finalCurrentTime = currentTime;
-                            Platform.runLater(() -> timeAdjuster.set(finalCurrentTime));
-
-                            AnimationFrame frame = new AnimationFrame(scene);
-                            frame = AnimationUtils.applyInterpolation(interpCache,
-                                    currentTime, this.interpMaxTime, frame);
-
-                            try {
-                                synchronized (manager.renderUpdateEvent) {
-                                    frame.apply(scene);
-                                    scene.refresh();
-                                    manager.renderUpdateEvent.wait(1000);
-                                }
-                            } catch (InterruptedException e) {
-                                break;
-                            }
-                        } while (currentTime < this.interpMaxTime);
-
-                        Platform.runLater(() -> previewPlayPause.setText("Play Preview"));
+                Map<String, PolynomialSplineFunction> splines = this.interpCache;
+                if (previewPlayer.isPlaying()) {
+                    previewPlayer.stop();
+                } else if (splines != null && scene != null) {
+                    previewPlayPause.setText("Pause Preview");
+                    previewPlayer.play(scene, splines, this.interpMaxTime, (time, image, stats) ->
+                            Platform.runLater(() -> {
+                                previewImage.setImage(image);
+                                previewStats.setText(stats.toString());
+                                timeAdjuster.set(time);
+                            }), time -> {
+                        // Leave the scene at the time playback stopped at
+                        previewScheduler.request(time);
+                        Platform.runLater(() -> previewPlayPause.setText(
+                                previewPlayer.isPlaying() ? "Pause Preview" : "Play Preview"));
                     });
-                } else {
-                    Platform.runLater(() -> previewPlayPause.setText("Play Preview"));
-                    this.previewStart = -1;
                 }
             });
-            box.getChildren().add(previewPlayPause);
+            box.getChildren().add(centeredHBox(previewPlayPause, previewStats));
         }
 
         // Keyframe editor
         {
             box.getChildren().add(new Separator());
-            Field[] interpFields = AnimationKeyFrame.interpolatableFields();
+            FrameSchema.DoubleAccessor[] interpFields = FrameSchema.interpolatable();
             for (int i = 0; i < interpFields.length; i++) {
-                Field field = interpFields[i];
-                DoubleSceneField sceneField = field.getAnnotation(DoubleSceneField.class);
-                DoubleJsonField jsonField = field.getAnnotation(DoubleJsonField.class);
-                DoubleField fieldValue = field.getAnnotation(DoubleField.class);
-                String fieldName = fieldValue == null ? field.getName() : fieldValue.value();
+                FrameSchema.DoubleAccessor field = interpFields[i];
+                DoubleField fieldValue = field.info;
+                String fieldName = fieldValue == null ? field.name : fieldValue.value();
 
                 DoubleTextField textField = new DoubleTextField();
                 textField.setText("");
@@ -246,10 +242,10 @@ public class KeyFrameTab implements RenderControlsTab {
                 currentValueButton.setOnAction(e -> {
                     if (scene != null) {
                         double value = Double.NaN;
-                        if (sceneField != null) {
-                            value = AnimationFrame.resolveSceneDoubleField(scene, sceneField.value());
-                        } else if (jsonField != null) {
-                            value = AnimationFrame.resolveJsonField(scene.toJson(), jsonField.value()).doubleValue(Double.NaN);
+                        if (field.hasScenePath()) {
+                            value = field.fromScene(scene);
+                        } else if (field.hasJsonPath()) {
+                            value = field.fromJson(scene.toJson(), Double.NaN);
                         }
                         if (!Double.isNaN(value)) {
                             if (fieldValue != null && fieldValue.inRadians()) {
@@ -290,6 +286,20 @@ public class KeyFrameTab implements RenderControlsTab {
                 .ifPresent(e -> keyframeTable.getSelectionModel().select(e));
     }
 
+    /**
+     * Apply the interpolated frame at a time to the scene. Called on the preview scheduler's thread.
+     */
+    private boolean applyPreview(double time) {
+        Map<String, PolynomialSplineFunction> splines = this.interpCache;
+        if (splines == null || scene == null) return false;
+
+        AnimationFrame current = new AnimationFrame(scene);
+        AnimationFrame frame = AnimationUtils.applyInterpolation(splines, time, this.interpMaxTime, current);
+        frame.applyDelta(scene, current);
+        scene.refresh();
+        return true;
+    }
+
     private void setKeyframeFields(Double2ObjectMap.Entry<AnimationKeyFrame> entry) {
         AnimationKeyFrame keyFrame = entry.getValue();
 
@@ -306,11 +316,10 @@ public class KeyFrameTab implements RenderControlsTab {
             this.updateManager();
         });
 
-        Field[] interpFields = AnimationKeyFrame.interpolatableFields();
+        FrameSchema.DoubleAccessor[] interpFields = FrameSchema.interpolatable();
         for (int i = 0; i < interpFields.length; i++) {
-            String fieldName = interpFields[i].getName();
-            boolean inRadians = interpFields[i].isAnnotationPresent(DoubleField.class) &&
-                    interpFields[i].getAnnotation(DoubleField.class).inRadians();
+            String fieldName = interpFields[i].name;
+            boolean inRadians = interpFields[i].info != null && interpFields[i].info.inRadians();
 
             TextField field = keyframeFields[i];
             try {
@@ -344,6 +353,8 @@ public class KeyFrameTab implements RenderControlsTab {
     @Override
     public void update(Scene scene) {
         this.scene = scene;
+        previewCache.clear();
+        previewHash = 0;
     }
 
     @Override
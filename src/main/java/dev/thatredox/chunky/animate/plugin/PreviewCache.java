@@ -0,0 +1,164 @@
+package dev.thatredox.chunky.animate.plugin;
+
+import dev.thatredox.chunky.animate.animation.AnimationFrame;
+import dev.thatredox.chunky.animate.animation.AnimationKeyFrame;
+import dev.thatredox.chunky.animate.animation.AnimationUtils;
+import dev.thatredox.chunky.animate.animation.FrameSchema;
+import it.unimi.dsi.fastutil.doubles.Double2ObjectMap;
+import it.unimi.dsi.fastutil.doubles.Double2ObjectSortedMap;
+import javafx.scene.image.Image;
+import org.apache.commons.math3.analysis.polynomials.PolynomialSplineFunction;
+import se.llbit.chunky.renderer.scene.Scene;
+import se.llbit.log.Log;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Low resolution preview images of the timeline. The timeline is rendered in the background with the same ray
+ * tracer as the AnimationPreview renderer at a handful of evenly spaced times, into a copy of the scene so the live
+ * scene is not disturbed. Images are kept in an LRU cache keyed by time and a hash of the keyframes and the scene.
+ */
+public class PreviewCache {
+    public static final int DEFAULT_WIDTH = 160;
+    public static final int DEFAULT_IMAGES = 128;
+
+    private final int width;
+    private final Map<Key, Image> images;
+    private final ExecutorService renderer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Preview Cache Renderer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * Incremented for every request, so an outdated request stops rendering.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param width     Width of the preview images in pixels. The height follows the scene's aspect ratio.
+     * @param maxImages Maximum number of cached images.
+     */
+    public PreviewCache(int width, int maxImages) {
+        this.width = width;
+        this.images = new LinkedHashMap<Key, Image>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Image> eldest) {
+                return size() > maxImages;
+            }
+        };
+    }
+
+    public PreviewCache() {
+        this(DEFAULT_WIDTH, DEFAULT_IMAGES);
+    }
+
+    /**
+     * Hash of a keyframe set together with the scene fields it does not animate. Changes to either change the
+     * previews, while previewing a time, which only changes animated fields, does not.
+     */
+    public static long hash(Double2ObjectSortedMap<AnimationKeyFrame> keyframes,
+                            Map<String, PolynomialSplineFunction> splines, Scene scene) {
+        AnimationFrame base = new AnimationFrame(scene);
+        long hash = 1125899906842597L;
+        for (FrameSchema.DoubleAccessor field : FrameSchema.doubles()) {
+            if (!splines.containsKey(field.name)) {
+                hash = 31 * hash + Double.doubleToLongBits(field.get(base));
+            }
+        }
+        for (FrameSchema.BooleanAccessor field : FrameSchema.booleans()) {
+            hash = 31 * hash + (field.get(base) ? 1231 : 1237);
+        }
+        for (Double2ObjectMap.Entry<AnimationKeyFrame> entry : keyframes.double2ObjectEntrySet()) {
+            hash = 31 * hash + Double.doubleToLongBits(entry.getDoubleKey());
+            hash = 31 * hash + entry.getValue().interpFields.hashCode();
+        }
+        return hash;
+    }
+
+    /**
+     * Cached image closest to a time, if there is one within half the spacing of the pre-rendered times.
+     *
+     * @return The image or null.
+     */
+    public synchronized Image get(long hash, double time, double endTime, int count) {
+        if (count < 2 || endTime <= 0) return null;
+        double spacing = endTime / (count - 1);
+        int index = (int) Math.round(time / spacing);
+        return images.get(new Key(hash, index * spacing));
+    }
+
+    /**
+     * Render the timeline at {@code count} evenly spaced times in the background. Times which are already cached are
+     * skipped. Replaces any earlier request which is still rendering.
+     */
+    public void prerender(Scene scene, Map<String, PolynomialSplineFunction> splines, double endTime, long hash,
+                          int count) {
+        long request = generation.incrementAndGet();
+        if (count < 2 || endTime <= 0) return;
+        renderer.execute(() -> {
+            try {
+                Scene copy = new Scene();
+                synchronized (scene) {
+                    copy.copyState(scene);
+                    copy.copyTransients(scene);
+                }
+                AnimationFrame base = new AnimationFrame(copy);
+                AnimationFrame previous = null;
+                double spacing = endTime / (count - 1);
+                for (int i = 0; i < count; i++) {
+                    if (generation.get() != request) return;
+                    Key key = new Key(hash, i * spacing);
+                    synchronized (this) {
+                        if (images.containsKey(key)) continue;
+                    }
+
+                    AnimationFrame frame = AnimationUtils.applyInterpolation(splines, key.time, endTime, base);
+                    frame.applyDelta(copy, previous);
+                    previous = frame;
+                    Image image = PreviewRenderer.render(copy, width, 1, false);
+                    synchronized (this) {
+                        images.put(key, image);
+                    }
+                }
+            } catch (RuntimeException e) {
+                Log.warn("Failed to render animation previews", e);
+            }
+        });
+    }
+
+    /**
+     * Stop rendering and drop every cached image.
+     */
+    public synchronized void clear() {
+        generation.incrementAndGet();
+        images.clear();
+    }
+
+    private static final class Key {
+        final long hash;
+        final double time;
+
+        Key(long hash, double time) {
+            this.hash = hash;
+            this.time = time;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash && Double.doubleToLongBits(time) == Double.doubleToLongBits(other.time);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash) * 31 + Double.hashCode(time);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package dev.thatredox.chunky.animate.plugin;
+
+import dev.thatredox.chunky.animate.animation.AnimationFrame;
+import dev.thatredox.chunky.animate.animation.AnimationUtils;
+import javafx.scene.image.Image;
+import org.apache.commons.math3.analysis.polynomials.PolynomialSplineFunction;
+import se.llbit.chunky.renderer.scene.Scene;
+import se.llbit.log.Log;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Plays an animation preview in real time. Frames are rendered at low resolution into a copy of the scene, always at
+ * the current wall clock time, so timeline positions which cannot be rendered in time are skipped instead of slowing
+ * playback down.
+ * <p>
+ * The render cost per sample is measured on every frame. The resolution and samples per pixel of the next frame are
+ * chosen so it fits within the frame time of the target frame rate: resolution is raised first, then samples per
+ * pixel.
+ */
+public class PreviewPlayer {
+    public static final double TARGET_FPS = 24;
+    public static final int MIN_WIDTH = 64;
+    public static final int MAX_WIDTH = 480;
+    public static final int MAX_SAMPLES = 4;
+
+    /**
+     * Fraction of the frame time to spend rendering. The rest is left for applying the frame and showing the image.
+     */
+    private static final double RENDER_FRACTION = 0.75;
+    private static final double COST_ALPHA = 0.3;
+    private static final double FPS_ALPHA = 0.2;
+
+    /**
+     * Statistics of a rendered frame.
+     */
+    public static final class Stats {
+        /**
+         * Shown frames per second, averaged over the last few frames.
+         */
+        public final double fps;
+        public final int width;
+        public final int height;
+        public final int samples;
+
+        /**
+         * Timeline positions at the target frame rate skipped since playback started.
+         */
+        public final int skipped;
+
+        Stats(double fps, int width, int height, int samples, int skipped) {
+            this.fps = fps;
+            this.width = width;
+            this.height = height;
+            this.samples = samples;
+            this.skipped = skipped;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.1f fps, %dx%d, %d spp, %d skipped", fps, width, height, samples, skipped);
+        }
+    }
+
+    /**
+     * Receives rendered frames on the player thread.
+     */
+    public interface Listener {
+        void frame(double time, Image image, Stats stats);
+    }
+
+    private final AtomicReference<Thread> playing = new AtomicReference<>(null);
+
+    /**
+     * Estimated render time per sample in nanoseconds, kept between playbacks.
+     */
+    private volatile double nanosPerSample = 0;
+
+    /**
+     * Play the preview from time 0 until {@code endTime} or until stopped. Stops any earlier playback first.
+     *
+     * @param onFinished Called with the last played time once playback ends, on the player thread.
+     */
+    public void play(Scene scene, Map<String, PolynomialSplineFunction> splines, double endTime, Listener listener,
+                     DoubleConsumer onFinished) {
+        Thread thread = new Thread(() -> run(scene, splines, endTime, listener, onFinished), "Preview Player");
+        thread.setDaemon(true);
+        stop();
+        if (playing.compareAndSet(null, thread)) thread.start();
+    }
+
+    public void stop() {
+        Thread thread = playing.getAndSet(null);
+        if (thread != null) thread.interrupt();
+    }
+
+    public boolean isPlaying() {
+        return playing.get() != null;
+    }
+
+    private void run(Scene scene, Map<String, PolynomialSplineFunction> splines, double endTime, Listener listener,
+                     DoubleConsumer onFinished) {
+        double time = 0;
+        try {
+            Scene copy = new Scene();
+            synchronized (scene) {
+                copy.copyState(scene);
+                copy.copyTransients(scene);
+            }
+            AnimationFrame base = new AnimationFrame(copy);
+            AnimationFrame previous = null;
+
+            double frameNanos = 1e9 / TARGET_FPS;
+            double aspect = scene.width / (double) scene.height;
+            double fps = TARGET_FPS;
+            int skipped = 0;
+            long lastStep = -1;
+            long start = System.nanoTime();
+            long lastFrame = start;
+            while (playing.get() == Thread.currentThread()) {
+                long now = System.nanoTime();
+                time = Math.min((now - start) / 1e9, endTime);
+                long step = Math.round(time * TARGET_FPS);
+                if (lastStep >= 0) skipped += (int) Math.max(step - lastStep - 1, 0);
+                lastStep = step;
+
+                // Pick the largest frame that fits in the frame time
+                int width = MIN_WIDTH;
+                int samples = 1;
+                if (nanosPerSample > 0) {
+                    double budget = frameNanos * RENDER_FRACTION / nanosPerSample;
+                    width = (int) Math.max(MIN_WIDTH, Math.min(MAX_WIDTH, Math.sqrt(budget * aspect)));
+                    int pixels = width * PreviewRenderer.height(scene, width);
+                    samples = (int) Math.max(1, Math.min(MAX_SAMPLES, budget / pixels));
+                }
+
+                AnimationFrame frame = AnimationUtils.applyInterpolation(splines, time, endTime, base);
+                frame.applyDelta(copy, previous);
+                previous = frame;
+
+                long renderStart = System.nanoTime();
+                Image image = PreviewRenderer.render(copy, width, samples, true);
+                long renderEnd = System.nanoTime();
+                int height = (int) image.getHeight();
+                double cost = (renderEnd - renderStart) / (double) (width * height * samples);
+                nanosPerSample = nanosPerSample == 0 ? cost : COST_ALPHA * cost + (1 - COST_ALPHA) * nanosPerSample;
+
+                if (renderEnd > lastFrame) {
+                    fps = FPS_ALPHA * (1e9 / (renderEnd - lastFrame)) + (1 - FPS_ALPHA) * fps;
+                }
+                lastFrame = renderEnd;
+                listener.frame(time, image, new Stats(fps, width, height, samples, skipped));
+                if (time >= endTime) break;
+
+                // Do not run ahead of the target frame rate
+                long sleep = (long) ((lastStep + 1) / TARGET_FPS * 1e9) - (System.nanoTime() - start);
+                if (sleep > 0) Thread.sleep(sleep / 1_000_000, (int) (sleep % 1_000_000));
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        } catch (RuntimeException e) {
+            Log.warn("Failed to play animation preview", e);
+        } finally {
+            playing.compareAndSet(Thread.currentThread(), null);
+            onFinished.accept(time);
+        }
+    }
+}
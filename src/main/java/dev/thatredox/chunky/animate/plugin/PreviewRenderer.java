@@ -0,0 +1,74 @@
+package dev.thatredox.chunky.animate.plugin;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import se.llbit.chunky.renderer.WorkerState;
+import se.llbit.chunky.renderer.scene.PreviewRayTracer;
+import se.llbit.chunky.renderer.scene.Scene;
+import se.llbit.math.Ray;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Renders small preview images of a scene with the same ray tracer as the AnimationPreview renderer.
+ */
+final class PreviewRenderer {
+    private static final PreviewRayTracer TRACER = new PreviewRayTracer();
+
+    private PreviewRenderer() {}
+
+    /**
+     * Height of a preview image, following the scene's aspect ratio.
+     */
+    static int height(Scene scene, int width) {
+        return Math.max(1, (int) Math.round(width * (double) scene.height / scene.width));
+    }
+
+    /**
+     * Render a preview image.
+     *
+     * @param samples  Samples per pixel. Samples after the first are jittered within the pixel.
+     * @param parallel Render rows on the common fork join pool instead of the calling thread.
+     */
+    static Image render(Scene scene, int width, int samples, boolean parallel) {
+        int height = height(scene, width);
+        double halfWidth = width / (2.0 * height);
+        double invHeight = 1.0 / height;
+        double exposure = scene.getExposure();
+
+        int[] pixels = new int[width * height];
+        IntStream rows = IntStream.range(0, height);
+        (parallel ? rows.parallel() : rows).forEach(y -> {
+            WorkerState state = new WorkerState();
+            state.ray = new Ray();
+            state.random = new Random(y);
+            for (int x = 0; x < width; x++) {
+                double r = 0, g = 0, b = 0;
+                for (int i = 0; i < samples; i++) {
+                    double ox = i == 0 ? 0.5 : state.random.nextDouble();
+                    double oy = i == 0 ? 0.5 : state.random.nextDouble();
+                    scene.camera().calcViewRay(state.ray, -halfWidth + (x + ox) * invHeight, -0.5 + (y + oy) * invHeight);
+                    scene.rayTrace(TRACER, state);
+                    r += state.ray.color.x;
+                    g += state.ray.color.y;
+                    b += state.ray.color.z;
+                }
+                pixels[y * width + x] = 0xFF000000
+                        | toneMap(r / samples, exposure) << 16
+                        | toneMap(g / samples, exposure) << 8
+                        | toneMap(b / samples, exposure);
+            }
+        });
+
+        WritableImage image = new WritableImage(width, height);
+        image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+        return image;
+    }
+
+    private static int toneMap(double value, double exposure) {
+        double gamma = Math.pow(Math.max(value * exposure, 0), 1 / 2.2);
+        return (int) (Math.min(gamma, 1) * 255 + 0.5);
+    }
+}
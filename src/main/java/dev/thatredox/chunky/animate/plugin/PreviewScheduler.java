@@ -0,0 +1,94 @@
+package dev.thatredox.chunky.animate.plugin;
+
+import se.llbit.log.Log;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Applies preview times to the scene on a dedicated thread, no faster than the renderer shows them. Only the latest
+ * requested time is kept, so requests made while an update is running replace each other instead of queueing up.
+ * <p>
+ * After every update the scheduler waits for the renderer to report progress through the render update event before
+ * applying the next time. The wait is capped by an estimate of how often the renderer reports, so a stopped renderer
+ * does not hold updates back for long.
+ */
+public class PreviewScheduler {
+    public interface Update {
+        /**
+         * Apply a time to the scene.
+         *
+         * @return False if nothing could be applied, for example because there are no keyframes.
+         */
+        boolean apply(double time);
+    }
+
+    /**
+     * Longest time to wait for the renderer after an update.
+     */
+    private static final long MAX_WAIT_MILLIS = 1000;
+    private static final long MIN_WAIT_MILLIS = 20;
+    private static final double CADENCE_ALPHA = 0.2;
+
+    private final Object renderUpdateEvent;
+    private final Update update;
+    private final AtomicReference<Double> pending = new AtomicReference<>(null);
+
+    private double cadenceMillis = MAX_WAIT_MILLIS;
+
+    /**
+     * @param renderUpdateEvent Notified whenever the renderer has shown progress.
+     * @param update            Applies a time to the scene. Called on the scheduler thread.
+     */
+    public PreviewScheduler(Object renderUpdateEvent, Update update) {
+        this.renderUpdateEvent = renderUpdateEvent;
+        this.update = update;
+
+        Thread thread = new Thread(this::run, "Preview Scheduler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Request a time to be previewed, replacing any request which has not been applied yet.
+     */
+    public void request(double time) {
+        if (pending.getAndSet(time) == null) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                Double requested = pending.getAndSet(null);
+                if (requested == null) {
+                    synchronized (this) {
+                        if (pending.get() == null) wait();
+                    }
+                    continue;
+                }
+                applyAndWait(requested);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                Log.warn("Failed to update animation preview", e);
+            }
+        }
+    }
+
+    private void applyAndWait(double time) throws InterruptedException {
+        // The update takes the scene lock, so it must not run under the render update event, which the render thread
+        // needs to report progress. A report arriving before the wait starts only costs one capped wait.
+        if (!update.apply(time)) return;
+
+        synchronized (renderUpdateEvent) {
+            long wait = Math.max(MIN_WAIT_MILLIS, Math.min(MAX_WAIT_MILLIS, (long) (cadenceMillis * 2)));
+            long start = System.currentTimeMillis();
+            renderUpdateEvent.wait(wait);
+            long waited = System.currentTimeMillis() - start;
+            cadenceMillis = CADENCE_ALPHA * waited + (1 - CADENCE_ALPHA) * cadenceMillis;
+        }
+    }
+}
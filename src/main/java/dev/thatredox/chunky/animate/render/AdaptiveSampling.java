@@ -0,0 +1,112 @@
+package dev.thatredox.chunky.animate.render;
+
+import se.llbit.chunky.renderer.scene.Scene;
+
+/**
+ * Decides when a frame has enough samples. Every {@code batch} SPP the sample buffer is compared against the buffer
+ * from the previous batch. The buffer is split into blocks of consecutive pixels and for each block the RMS change of
+ * the pixel luminance is divided by the block's mean luminance. A frame has converged once the worst block changes
+ * by less than the threshold and at least the minimum SPP has been rendered.
+ */
+public class AdaptiveSampling {
+    /**
+     * Pixels per block.
+     */
+    private static final int BLOCK_SIZE = 1024;
+
+    /**
+     * Luminance floor, so nearly black blocks do not dominate the estimate.
+     */
+    private static final double MIN_LUMINANCE = 0.01;
+
+    private final int minSpp;
+    private final int maxSpp;
+    private final int batch;
+    private final double threshold;
+
+    private int frameMinSpp;
+    private double[] previous = null;
+    private int previousSpp = 0;
+    private double noise = Double.POSITIVE_INFINITY;
+
+    public AdaptiveSampling(int minSpp, int maxSpp, int batch, double threshold) {
+        this.minSpp = minSpp;
+        this.maxSpp = Math.max(maxSpp, minSpp);
+        this.batch = Math.max(batch, 1);
+        this.threshold = threshold;
+        this.frameMinSpp = minSpp;
+    }
+
+    public int getMinSpp() {
+        return minSpp;
+    }
+
+    public int getMaxSpp() {
+        return maxSpp;
+    }
+
+    /**
+     * Forget the previous frame.
+     *
+     * @param hold Number of identical frames accumulated into this frame. The minimum SPP is scaled by this.
+     */
+    public void startFrame(int hold) {
+        frameMinSpp = minSpp * hold;
+        previousSpp = 0;
+        noise = Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Noise estimate from the last completed batch. Infinite until two batches have been compared.
+     */
+    public double getNoise() {
+        return noise;
+    }
+
+    /**
+     * Update the noise estimate if a batch has completed.
+     *
+     * @param scene Scene being rendered.
+     * @param spp   Current SPP of the scene.
+     * @return True if the frame has converged and rendering can stop.
+     */
+    public boolean update(Scene scene, int spp) {
+        if (spp - previousSpp < batch) return false;
+
+        double[] samples = scene.getSampleBuffer();
+        if (previous == null || previous.length != samples.length) {
+            previous = new double[samples.length];
+        } else if (previousSpp > 0) {
+            noise = estimateNoise(previous, samples);
+        }
+        System.arraycopy(samples, 0, previous, 0, samples.length);
+        previousSpp = spp;
+
+        return spp >= frameMinSpp && noise < threshold;
+    }
+
+    private static double estimateNoise(double[] previous, double[] samples) {
+        double worst = 0;
+        int pixels = samples.length / 3;
+        for (int start = 0; start < pixels; start += BLOCK_SIZE) {
+            int end = Math.min(start + BLOCK_SIZE, pixels);
+            double sum = 0;
+            double squaredChange = 0;
+            for (int p = start; p < end; p++) {
+                int i = p * 3;
+                double current = luminance(samples[i], samples[i + 1], samples[i + 2]);
+                double change = current - luminance(previous[i], previous[i + 1], previous[i + 2]);
+                sum += current;
+                squaredChange += change * change;
+            }
+            int count = end - start;
+            double relative = Math.sqrt(squaredChange / count) / Math.max(sum / count, MIN_LUMINANCE);
+            worst = Math.max(worst, relative);
+        }
+        return worst;
+    }
+
+    private static double luminance(double r, double g, double b) {
+        return 0.2126 * r + 0.7152 * g + 0.0722 * b;
+    }
+}
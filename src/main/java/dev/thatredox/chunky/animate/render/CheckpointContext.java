@@ -0,0 +1,67 @@
+package dev.thatredox.chunky.animate.render;
+
+import se.llbit.chunky.main.Chunky;
+import se.llbit.chunky.renderer.RenderContext;
+
+import java.io.*;
+
+/**
+ * Render context which stores render dumps in a file per frame instead of the scene's single dump file. Each file
+ * is named after the frame and its parameter hash, so checkpoints of other frames, shards or workers rendering the
+ * same scene never overwrite it, and a dump is never loaded into a frame with different parameters.
+ * <p>
+ * Only use this context to save and load dumps. Every other scene file is resolved as usual.
+ */
+public class CheckpointContext extends RenderContext {
+    private static final String DUMP_EXTENSION = ".dump";
+
+    private final File directory;
+    private volatile File dump = null;
+
+    /**
+     * @param directory Directory to store dumps in.
+     */
+    public CheckpointContext(Chunky chunky, File directory) {
+        super(chunky);
+        this.directory = directory;
+    }
+
+    public static String fileName(int frame, long hash) {
+        return String.format("frame%05d-%016x%s", frame, hash, DUMP_EXTENSION);
+    }
+
+    /**
+     * Select the dump used by the next {@code saveDump} or {@code loadDump}.
+     *
+     * @return The dump file.
+     */
+    public File select(int frame, long hash) {
+        dump = new File(directory, fileName(frame, hash));
+        return dump;
+    }
+
+    public File getDump(String fileName) {
+        return new File(directory, fileName);
+    }
+
+    @Override
+    public File getSceneFile(String fileName) {
+        File selected = dump;
+        if (selected != null && fileName.endsWith(DUMP_EXTENSION)) return selected;
+        return super.getSceneFile(fileName);
+    }
+
+    @Override
+    public InputStream getSceneFileInputStream(String fileName) throws FileNotFoundException {
+        File selected = dump;
+        if (selected != null && fileName.endsWith(DUMP_EXTENSION)) return new FileInputStream(selected);
+        return super.getSceneFileInputStream(fileName);
+    }
+
+    @Override
+    public OutputStream getSceneFileOutputStream(String fileName) throws FileNotFoundException {
+        File selected = dump;
+        if (selected != null && fileName.endsWith(DUMP_EXTENSION)) return new FileOutputStream(selected);
+        return super.getSceneFileOutputStream(fileName);
+    }
+}
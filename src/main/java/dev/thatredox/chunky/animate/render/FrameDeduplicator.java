@@ -0,0 +1,76 @@
+package dev.thatredox.chunky.animate.render;
+
+import dev.thatredox.chunky.animate.animation.AnimationFrame;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Remembers the output of every rendered frame so frames with identical parameters can reuse it instead of being
+ * rendered again.
+ */
+public class FrameDeduplicator {
+    private final Long2ObjectOpenHashMap<List<Entry>> rendered = new Long2ObjectOpenHashMap<>();
+
+    /**
+     * Find an earlier render of a frame with exactly the same parameters.
+     *
+     * @return The earlier render or null if there is none.
+     */
+    public synchronized Entry find(AnimationFrame frame) {
+        List<Entry> entries = rendered.get(frame.parameterHash());
+        if (entries == null) return null;
+        for (Entry entry : entries) {
+            if (entry.frame.sameParameters(frame)) return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Record a rendered frame.
+     */
+    public synchronized void add(AnimationFrame frame, File output, int spp) {
+        rendered.computeIfAbsent(frame.parameterHash(), hash -> new ArrayList<>())
+                .add(new Entry(new AnimationFrame(frame), output, spp));
+    }
+
+    public synchronized void clear() {
+        rendered.clear();
+    }
+
+    /**
+     * Make {@code copy} a duplicate of {@code original}, replacing {@code copy} if it exists.
+     *
+     * @param link Try to create a hard link first. Falls back to copying if the file system does not support links.
+     */
+    public static void duplicate(File original, File copy, boolean link) throws IOException {
+        if (original.equals(copy)) return;
+        Files.deleteIfExists(copy.toPath());
+        if (link) {
+            try {
+                Files.createLink(copy.toPath(), original.toPath());
+                return;
+            } catch (IOException | UnsupportedOperationException e) {
+                // Copy instead
+            }
+        }
+        Files.copy(original.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public static class Entry {
+        public final AnimationFrame frame;
+        public final File output;
+        public final int spp;
+
+        private Entry(AnimationFrame frame, File output, int spp) {
+            this.frame = frame;
+            this.output = output;
+            this.spp = spp;
+        }
+    }
+}
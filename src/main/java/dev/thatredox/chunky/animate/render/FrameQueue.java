@@ -0,0 +1,197 @@
+package dev.thatredox.chunky.animate.render;
+
+import se.llbit.log.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Work queue shared between renderers through lock files in a common directory. A worker claims a frame by creating
+ * {@code frameNNNNN.lock}, which fails if another worker got there first, and renames it to {@code frameNNNNN.done}
+ * once the frame is saved.
+ * <p>
+ * Held locks are touched periodically. A lock which has not been touched within the timeout is assumed to belong to
+ * a dead worker and may be taken over.
+ */
+public class FrameQueue implements Closeable {
+    private final Path directory;
+    private final String worker;
+    private final long timeoutMillis;
+    private final Set<Integer> held = new HashSet<>();
+    private final ScheduledExecutorService heartbeat;
+
+    public FrameQueue(File directory, long timeoutMillis) throws IOException {
+        this.directory = directory.toPath();
+        Files.createDirectories(this.directory);
+        this.worker = ManagementFactory.getRuntimeMXBean().getName();
+        this.timeoutMillis = timeoutMillis;
+
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Frame Queue Heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(timeoutMillis / 4, 1000);
+        heartbeat.scheduleAtFixedRate(this::touchLocks, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Name of this worker, unique between processes and machines.
+     */
+    public String getWorker() {
+        return worker;
+    }
+
+    private Path lockFile(int frame) {
+        return directory.resolve(String.format("frame%05d.lock", frame));
+    }
+
+    private Path doneFile(int frame) {
+        return directory.resolve(String.format("frame%05d.done", frame));
+    }
+
+    /**
+     * Try to claim a frame.
+     *
+     * @return True if this worker now owns the frame, false if it is done or owned by another worker.
+     */
+    public boolean claim(int frame) throws IOException {
+        if (isDone(frame)) return false;
+
+        Path lock = lockFile(frame);
+        if (!tryCreate(lock)) {
+            FileTime modified;
+            try {
+                modified = Files.getLastModifiedTime(lock);
+            } catch (NoSuchFileException e) {
+                // Released while we were looking
+                modified = FileTime.fromMillis(0);
+            }
+            if (System.currentTimeMillis() - modified.toMillis() < timeoutMillis) return false;
+
+            if (!takeOver(lock) || !tryCreate(lock)) return false;
+            Log.warn("Took over stale lock for frame " + frame);
+        }
+
+        if (isDone(frame)) {
+            // Completed by another worker between the checks
+            Files.deleteIfExists(lock);
+            return false;
+        }
+        synchronized (held) {
+            held.add(frame);
+        }
+        return true;
+    }
+
+    /**
+     * Remove a stale lock so it can be claimed again. The lock is moved aside atomically first, so when several
+     * workers find the same stale lock only one of them removes it. A worker which moved a lock that has been
+     * refreshed or re-created since it was found stale puts it back.
+     *
+     * @return True if this worker removed the stale lock.
+     */
+    private boolean takeOver(Path lock) throws IOException {
+        Path aside = lock.resolveSibling(lock.getFileName() + "." + worker.replaceAll("[^A-Za-z0-9_.-]", "_"));
+        try {
+            Files.move(lock, aside, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            // Taken over or released by another worker
+            return false;
+        }
+
+        if (System.currentTimeMillis() - Files.getLastModifiedTime(aside).toMillis() < timeoutMillis) {
+            try {
+                // Not an atomic move, which would replace a lock created in the meantime
+                Files.move(aside, lock);
+            } catch (FileAlreadyExistsException e) {
+                Log.warn("Lost a live lock while taking over " + lock.getFileName());
+                Files.deleteIfExists(aside);
+            }
+            return false;
+        }
+        Files.delete(aside);
+        return true;
+    }
+
+    private boolean tryCreate(Path lock) throws IOException {
+        try {
+            Files.write(lock, worker.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE_NEW);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        }
+    }
+
+    public boolean isDone(int frame) {
+        return Files.exists(doneFile(frame));
+    }
+
+    /**
+     * Mark a claimed frame as done.
+     */
+    public void complete(int frame) {
+        synchronized (held) {
+            held.remove(frame);
+        }
+        try {
+            Files.move(lockFile(frame), doneFile(frame), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Log.warn("Failed to mark frame " + frame + " as done", e);
+        }
+    }
+
+    /**
+     * Give up a claimed frame so another worker can render it.
+     */
+    public void release(int frame) {
+        synchronized (held) {
+            held.remove(frame);
+        }
+        try {
+            Files.deleteIfExists(lockFile(frame));
+        } catch (IOException e) {
+            Log.warn("Failed to release frame " + frame, e);
+        }
+    }
+
+    private void touchLocks() {
+        FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+        Integer[] frames;
+        synchronized (held) {
+            frames = held.toArray(new Integer[0]);
+        }
+        for (int frame : frames) {
+            try {
+                Files.setLastModifiedTime(lockFile(frame), now);
+            } catch (IOException e) {
+                Log.warn("Failed to refresh lock for frame " + frame, e);
+            }
+        }
+    }
+
+    /**
+     * Stop refreshing locks and release every frame which was not completed.
+     */
+    @Override
+    public void close() {
+        heartbeat.shutdownNow();
+        Integer[] frames;
+        synchronized (held) {
+            frames = held.toArray(new Integer[0]);
+        }
+        for (int frame : frames) {
+            release(frame);
+        }
+    }
+}
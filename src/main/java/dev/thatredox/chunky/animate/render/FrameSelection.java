@@ -0,0 +1,114 @@
+package dev.thatredox.chunky.animate.render;
+
+/**
+ * Deterministic subset of an animation's frames. Frames are taken from an inclusive range with a stride, and the
+ * frames in that range are dealt out round robin between {@code shards} shards.
+ */
+public class FrameSelection {
+    public static final FrameSelection ALL = new FrameSelection(0, Integer.MAX_VALUE, 1, 0, 1);
+
+    private final int first;
+    private final int last;
+    private final int stride;
+    private final int shard;
+    private final int shards;
+
+    /**
+     * @param first  First frame of the range.
+     * @param last   Last frame of the range, inclusive.
+     * @param stride Render every {@code stride}th frame of the range.
+     * @param shard  Shard to select, from 0 to {@code shards - 1}.
+     * @param shards Number of shards.
+     */
+    public FrameSelection(int first, int last, int stride, int shard, int shards) {
+        if (first < 0 || last < first) {
+            throw new IllegalArgumentException("Invalid frame range: " + first + "-" + last);
+        }
+        if (stride < 1) {
+            throw new IllegalArgumentException("Stride must be at least 1: " + stride);
+        }
+        if (shards < 1 || shard < 0 || shard >= shards) {
+            throw new IllegalArgumentException("Invalid shard: " + shard + "/" + shards);
+        }
+        this.first = first;
+        this.last = last;
+        this.stride = stride;
+        this.shard = shard;
+        this.shards = shards;
+    }
+
+    /**
+     * Parse command line options. Any option may be null.
+     *
+     * @param frames Frame range, either {@code a-b}, {@code a-} or a single frame {@code a}.
+     * @param stride Stride as an integer.
+     * @param shard  Shard as {@code k/n} with {@code 0 <= k < n}.
+     */
+    public static FrameSelection parse(String frames, String stride, String shard) {
+        int first = 0;
+        int last = Integer.MAX_VALUE;
+        if (frames != null) {
+            int dash = frames.indexOf('-');
+            if (dash < 0) {
+                first = last = Integer.parseInt(frames.trim());
+            } else {
+                first = Integer.parseInt(frames.substring(0, dash).trim());
+                String end = frames.substring(dash + 1).trim();
+                if (!end.isEmpty()) last = Integer.parseInt(end);
+            }
+        }
+
+        int k = 0;
+        int n = 1;
+        if (shard != null) {
+            int slash = shard.indexOf('/');
+            if (slash < 0) throw new IllegalArgumentException("Shard must be in the form k/n: " + shard);
+            k = Integer.parseInt(shard.substring(0, slash).trim());
+            n = Integer.parseInt(shard.substring(slash + 1).trim());
+        }
+
+        return new FrameSelection(first, last, stride == null ? 1 : Integer.parseInt(stride.trim()), k, n);
+    }
+
+    public boolean isSharded() {
+        return shards > 1;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * First selected frame.
+     */
+    public int first() {
+        return first + shard * stride;
+    }
+
+    /**
+     * Next selected frame after a selected frame.
+     */
+    public int next(int frame) {
+        return frame + stride * shards;
+    }
+
+    public boolean contains(int frame) {
+        if (frame < first || frame > last) return false;
+        int step = frame - first;
+        return step % stride == 0 && (step / stride) % shards == shard;
+    }
+
+    /**
+     * Number of selected frames in an animation.
+     */
+    public int count(int numFrames) {
+        int end = Math.min(numFrames - 1, last);
+        int start = first();
+        if (end < start) return 0;
+        return (end - start) / (stride * shards) + 1;
+    }
+}
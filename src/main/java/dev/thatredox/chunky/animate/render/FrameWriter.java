@@ -0,0 +1,200 @@
+package dev.thatredox.chunky.animate.render;
+
+import dev.thatredox.chunky.animate.util.AnimationEvents;
+import se.llbit.chunky.renderer.scene.Scene;
+import se.llbit.log.Log;
+import se.llbit.util.TaskTracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * Writes rendered frames on background threads. Each frame is copied into its own scene together with its sample
+ * buffer, so the original scene can start rendering the next frame while the copy is post processed and saved.
+ * <p>
+ * At most {@code queueSize} frames are in flight at once. Writing blocks when the queue is full.
+ */
+public class FrameWriter implements AutoCloseable {
+    private static final Field SAMPLES;
+    static {
+        Field samples;
+        try {
+            samples = Scene.class.getDeclaredField("samples");
+            samples.setAccessible(true);
+        } catch (NoSuchFieldException | RuntimeException e) {
+            samples = null;
+        }
+        SAMPLES = samples;
+    }
+
+    private final ExecutorService writers;
+    private final Semaphore slots;
+    private final int queueSize;
+    private final AtomicInteger failedSaves = new AtomicInteger();
+
+    /**
+     * @param threads   Number of writer threads. If 0, frames are written synchronously.
+     * @param queueSize Maximum number of frames waiting to be written.
+     */
+    public FrameWriter(int threads, int queueSize) {
+        this.queueSize = Math.max(queueSize, 1);
+        this.slots = new Semaphore(this.queueSize);
+        this.writers = threads <= 0 ? null : Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "Frame Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queue the current frame of a scene to be saved. The scene may be modified as soon as this returns.
+     */
+    public void write(Scene scene, int frame, File file) throws InterruptedException {
+        write(scene, frame, file, null, null);
+    }
+
+    /**
+     * Queue the current frame of a scene to be saved. The scene may be modified as soon as this returns.
+     *
+     * @param frame   Index of the frame, recorded in the {@link AnimationEvents.FrameSave} event.
+     * @param onSaved  Called on the writer thread once the frame has been saved successfully, with the time taken to
+     *                 post process and save the frame in milliseconds. May be null.
+     * @param onFailed Called on the writer thread instead of {@code onSaved} if the frame could not be saved. May be
+     *                 null.
+     */
+    public void write(Scene scene, int frame, File file, LongConsumer onSaved, Runnable onFailed)
+            throws InterruptedException {
+        if (writers == null) {
+            save(scene, frame, file, false, onSaved, onFailed);
+            return;
+        }
+
+        // Take the slot first so a full queue does not hold another copy of the sample buffer
+        slots.acquire();
+        try {
+            Scene snapshot = snapshot(scene);
+            if (snapshot == null) {
+                slots.release();
+                save(scene, frame, file, false, onSaved, onFailed);
+                return;
+            }
+            writers.execute(() -> {
+                try {
+                    save(snapshot, frame, file, true, onSaved, onFailed);
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Wait for every queued frame to be written.
+     */
+    public void flush() throws InterruptedException {
+        slots.acquire(queueSize);
+        slots.release(queueSize);
+    }
+
+    /**
+     * Number of frames which failed to save.
+     */
+    public int getFailedSaves() {
+        return failedSaves.get();
+    }
+
+    /**
+     * Write every queued frame and stop the writer threads.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        if (writers == null) return;
+        flush();
+        writers.shutdown();
+        while (!writers.awaitTermination(1, TimeUnit.MINUTES)) {
+            Log.warn("Still waiting for frames to be saved");
+        }
+    }
+
+    private void save(Scene scene, int frame, File file, boolean asynchronous, LongConsumer onSaved,
+                      Runnable onFailed) {
+        AnimationEvents.FrameSave event = new AnimationEvents.FrameSave(frame, file.getName());
+        event.asynchronous = asynchronous;
+        event.begin();
+        Path temp = null;
+        long saveMillis = -1;
+        try {
+            long start = System.currentTimeMillis();
+            // Save next to the output and move it into place. Writing the output in place would also overwrite every
+            // frame hard linked to it as a duplicate.
+            String name = file.getName();
+            int extension = name.lastIndexOf('.');
+            temp = Files.createTempFile(file.getAbsoluteFile().getParentFile().toPath(),
+                    "." + (extension < 0 ? name : name.substring(0, extension)),
+                    extension < 0 ? "" : name.substring(extension));
+            scene.saveFrame(temp.toFile(), TaskTracker.NONE);
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+            event.commit();
+            saveMillis = System.currentTimeMillis() - start;
+        } catch (IOException | RuntimeException e) {
+            failedSaves.incrementAndGet();
+            Log.error("Failed to save frame " + file.getName(), e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    Log.warn("Failed to delete " + temp, e);
+                }
+            }
+        }
+
+        if (saveMillis >= 0) {
+            if (onSaved != null) onSaved.accept(saveMillis);
+        } else if (onFailed != null) {
+            onFailed.run();
+        }
+    }
+
+    /**
+     * Copy a scene together with its sample buffer.
+     *
+     * @return The copy or null if the sample buffer could not be copied.
+     */
+    private static Scene snapshot(Scene scene) {
+        Scene snapshot = new Scene();
+        synchronized (scene) {
+            snapshot.copyState(scene);
+            snapshot.copyTransients(scene);
+
+            double[] samples = scene.getSampleBuffer();
+            double[] copy = snapshot.getSampleBuffer();
+            if (copy != samples && copy.length == samples.length) {
+                System.arraycopy(samples, 0, copy, 0, samples.length);
+                return snapshot;
+            }
+            if (SAMPLES == null) return null;
+            try {
+                SAMPLES.set(snapshot, samples.clone());
+                return snapshot;
+            } catch (IllegalAccessException | RuntimeException e) {
+                Log.warn("Failed to copy frame, saving synchronously", e);
+                return null;
+            }
+        }
+    }
+}
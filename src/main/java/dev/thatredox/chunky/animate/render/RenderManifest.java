@@ -0,0 +1,178 @@
+package dev.thatredox.chunky.animate.render;
+
+import se.llbit.json.JsonObject;
+import se.llbit.json.JsonParser;
+import se.llbit.log.Log;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Record of rendered frames, stored as one JSON object per line. Lines are appended as frames complete, so a manifest
+ * survives the renderer being killed at any point.
+ * <pre>
+ * {"frame":12,"hash":"4f1c...","spp":256,"file":"frame00012.png"}
+ * {"frame":13,"hash":"9ab0...","checkpoint":128,"dump":"frame00013-9ab0....dump"}
+ * </pre>
+ * The hash is {@link dev.thatredox.chunky.animate.animation.AnimationFrame#parameterHash()} of the rendered frame.
+ * Checkpoint lines mark a render dump saved part way through a frame, relative to the output directory.
+ */
+public class RenderManifest implements Closeable {
+    public static final String FILE_NAME = "manifest.jsonl";
+
+    private final Map<Integer, Entry> completed = new HashMap<>();
+    private final Map<Integer, Entry> checkpoints = new HashMap<>();
+    private final PrintStream out;
+
+    /**
+     * Open a manifest for writing and read the records of other manifests, such as the manifests of other shards
+     * or workers rendering to the same directory. Completed frames and checkpoints are read from every manifest, so a
+     * restarted worker finds checkpoints whatever it is named.
+     *
+     * @param file   Manifest to append to. It is cleared unless it is one of the manifests to read.
+     * @param others Manifests to read records from.
+     */
+    public RenderManifest(File file, File[] others) throws IOException {
+        boolean resume = false;
+        for (File other : others) {
+            if (!other.isFile()) continue;
+            boolean own = other.getAbsoluteFile().equals(file.getAbsoluteFile());
+            resume |= own;
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(other),
+                    StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (!line.trim().isEmpty()) read(line);
+                }
+            }
+        }
+        // Manifests are read in no particular order, so drop checkpoints of completed frames afterwards
+        checkpoints.values().removeIf(checkpoint -> {
+            Entry entry = completed.get(checkpoint.frame);
+            return entry != null && entry.hash == checkpoint.hash && entry.spp >= checkpoint.spp;
+        });
+        out = new PrintStream(new FileOutputStream(file, resume), true, "UTF-8");
+    }
+
+    /**
+     * Find every manifest in an output directory.
+     */
+    public static File[] findManifests(File directory) {
+        File[] manifests = directory.listFiles((dir, name) -> name.startsWith("manifest") && name.endsWith(".jsonl"));
+        return manifests == null ? new File[0] : manifests;
+    }
+
+    private void read(String line) {
+        JsonObject json;
+        try {
+            json = new JsonParser(new ByteArrayInputStream(line.getBytes(StandardCharsets.UTF_8))).parse().asObject();
+        } catch (JsonParser.SyntaxError | IOException e) {
+            // The last line is cut short if the renderer was killed while writing it
+            Log.warn("Skipping malformed manifest line: " + line);
+            return;
+        }
+
+        int frame = json.get("frame").intValue(-1);
+        String hashString = json.get("hash").stringValue(null);
+        if (frame < 0 || hashString == null) return;
+        long hash;
+        try {
+            hash = Long.parseUnsignedLong(hashString, 16);
+        } catch (NumberFormatException e) {
+            Log.warn("Skipping malformed manifest line: " + line);
+            return;
+        }
+
+        int checkpoint = json.get("checkpoint").intValue(-1);
+        if (checkpoint >= 0) {
+            String dump = json.get("dump").stringValue(null);
+            Entry previous = checkpoints.get(frame);
+            if (dump != null && (previous == null || previous.hash != hash || previous.spp <= checkpoint)) {
+                checkpoints.put(frame, new Entry(frame, hash, checkpoint, dump));
+            }
+        } else {
+            completed.put(frame, new Entry(frame, hash, json.get("spp").intValue(0),
+                    json.get("file").stringValue(null)));
+        }
+    }
+
+    /**
+     * @return The last completed render of a frame or null if the frame has not been rendered.
+     */
+    public synchronized Entry getCompleted(int frame) {
+        return completed.get(frame);
+    }
+
+    /**
+     * @return The last checkpoint of a frame which has not completed or null if there is none.
+     */
+    public synchronized Entry getCheckpoint(int frame) {
+        return checkpoints.get(frame);
+    }
+
+    /**
+     * Check if a frame has already been rendered with the same parameters, at least the target SPP, and its output
+     * file still exists.
+     */
+    public synchronized boolean isComplete(int frame, long hash, int targetSpp, File outputFile) {
+        Entry entry = completed.get(frame);
+        return entry != null && entry.hash == hash && entry.spp >= targetSpp
+                && outputFile.getName().equals(entry.file) && outputFile.isFile();
+    }
+
+    public synchronized void frameComplete(int frame, long hash, int spp, String file) {
+        Entry entry = new Entry(frame, hash, spp, file);
+        completed.put(frame, entry);
+        checkpoints.remove(frame);
+
+        JsonObject json = new JsonObject();
+        json.add("frame", frame);
+        json.add("hash", Long.toHexString(hash));
+        json.add("spp", spp);
+        json.add("file", file);
+        out.println(json.toCompactString());
+    }
+
+    /**
+     * @param dump Render dump file name relative to the output directory.
+     */
+    public synchronized void checkpoint(int frame, long hash, int spp, String dump) {
+        checkpoints.put(frame, new Entry(frame, hash, spp, dump));
+
+        JsonObject json = new JsonObject();
+        json.add("frame", frame);
+        json.add("hash", Long.toHexString(hash));
+        json.add("checkpoint", spp);
+        json.add("dump", dump);
+        out.println(json.toCompactString());
+    }
+
+    @Override
+    public synchronized void close() {
+        out.close();
+    }
+
+    public static class Entry {
+        public final int frame;
+        public final long hash;
+
+        /**
+         * SPP reached. For checkpoints this is the SPP of the saved render dump.
+         */
+        public final int spp;
+
+        /**
+         * Output file name relative to the output directory. For checkpoints this is the render dump.
+         */
+        public final String file;
+
+        public Entry(int frame, long hash, int spp, String file) {
+            this.frame = frame;
+            this.hash = hash;
+            this.spp = spp;
+            this.file = file;
+        }
+    }
+}
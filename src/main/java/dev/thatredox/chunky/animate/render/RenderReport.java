@@ -0,0 +1,124 @@
+package dev.thatredox.chunky.animate.render;
+
+import se.llbit.json.JsonObject;
+
+import java.io.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per frame render statistics, written as JSON lines or, if the file name ends in {@code .csv}, as CSV.
+ */
+public class RenderReport implements Closeable {
+    private static final String CSV_HEADER = "frame,timestamp,spp,targetSpp,applyMillis,renderMillis,handoffMillis," +
+            "saveMillis,samplesPerSecond,heapUsed,heapCommitted,heapMax,etaSeconds,failed";
+
+    private final PrintStream out;
+    private final boolean csv;
+
+    /**
+     * @param append Append to an existing report instead of replacing it.
+     */
+    public RenderReport(File file, boolean append) throws IOException {
+        this.csv = file.getName().endsWith(".csv");
+        boolean writeHeader = csv && !(append && file.isFile() && file.length() > 0);
+        this.out = new PrintStream(new FileOutputStream(file, append), true, "UTF-8");
+        if (writeHeader) out.println(CSV_HEADER);
+    }
+
+    public synchronized void write(FrameRecord record) {
+        if (csv) {
+            out.println(record.frame + "," + record.timestamp + "," + record.spp + "," + record.targetSpp + "," +
+                    record.applyMillis + "," + record.renderMillis + "," + record.handoffMillis + "," +
+                    record.saveMillis + "," + record.samplesPerSecond + "," + record.heapUsed + "," +
+                    record.heapCommitted + "," + record.heapMax + "," + record.etaSeconds + "," + record.failed);
+        } else {
+            JsonObject json = new JsonObject();
+            json.add("frame", record.frame);
+            json.add("timestamp", record.timestamp);
+            json.add("spp", record.spp);
+            json.add("targetSpp", record.targetSpp);
+            json.add("applyMillis", record.applyMillis);
+            json.add("renderMillis", record.renderMillis);
+            json.add("handoffMillis", record.handoffMillis);
+            json.add("saveMillis", record.saveMillis);
+            json.add("samplesPerSecond", record.samplesPerSecond);
+            json.add("heapUsed", record.heapUsed);
+            json.add("heapCommitted", record.heapCommitted);
+            json.add("heapMax", record.heapMax);
+            json.add("etaSeconds", record.etaSeconds);
+            json.add("failed", record.failed);
+            out.println(json.toCompactString());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        out.close();
+    }
+
+    public static class FrameRecord {
+        public int frame;
+
+        /**
+         * Time the frame finished rendering, in milliseconds since the epoch.
+         */
+        public long timestamp;
+        public int spp;
+        public int targetSpp;
+
+        /**
+         * Time taken to apply the frame to the scene.
+         */
+        public long applyMillis;
+        public long renderMillis;
+
+        /**
+         * Time the render thread spent handing the frame to the frame writer.
+         */
+        public long handoffMillis;
+
+        /**
+         * Time taken to post process, encode and write the frame. This runs on a writer thread.
+         */
+        public long saveMillis;
+
+        /**
+         * Last value reported by the render manager.
+         */
+        public int samplesPerSecond;
+
+        public long heapUsed;
+        public long heapCommitted;
+        public long heapMax;
+
+        /**
+         * Estimated time to render the remaining frames, or -1 if unknown.
+         */
+        public long etaSeconds;
+
+        /**
+         * The frame could not be saved. The save time is then -1.
+         */
+        public boolean failed;
+
+        private final AtomicInteger pendingParts = new AtomicInteger(2);
+
+        public FrameRecord(int frame) {
+            this.frame = frame;
+            Runtime runtime = Runtime.getRuntime();
+            this.heapCommitted = runtime.totalMemory();
+            this.heapUsed = heapCommitted - runtime.freeMemory();
+            this.heapMax = runtime.maxMemory();
+        }
+
+        /**
+         * Mark one of the two parts of the record as filled in. The render thread fills in the render statistics and
+         * the frame writer fills in the save time, in either order.
+         *
+         * @return True if both parts are done and the record can be written.
+         */
+        public boolean partDone() {
+            return pendingParts.decrementAndGet() == 0;
+        }
+    }
+}
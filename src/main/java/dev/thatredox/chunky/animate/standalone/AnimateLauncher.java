@@ -16,7 +16,9 @@ public class AnimateLauncher {
         options.addOption("t", "trim", false,
                 "Trim animation frames to only contain recognized fields. See `--help trim` for more details.");
         options.addOption("k", "keyframe", false,
-                "Convert keyframe into a single keyframe file. Keyframe time is taken from animation time. See `--help keyframe` for more details.");
+                "Convert keyframe into a single keyframe file. Keyframe time is taken from animation time unless `--time` is given. See `--help keyframe` for more details.");
+        options.addOption("p", "pack", false,
+                "Pack a folder of animation frames into a single binary frame pack. See `--help pack` for more details.");
 
         CommandLineParser parser = new DefaultParser();
         CommandLine cmd = parser.parse(options, args, true);
@@ -29,6 +31,8 @@ public class AnimateLauncher {
             System.exit(FrameTrimmer.trimFrames(args));
         } else if (cmd.hasOption("keyframe")) {
             System.exit(FrameKeyframes.fromKeyframes(args));
+        } else if (cmd.hasOption("pack")) {
+            System.exit(FramePacker.packFrames(args));
         }
 
         String helpCmd = cmd.getOptionValue("help");
@@ -59,6 +63,11 @@ public class AnimateLauncher {
                 formatter.printHelp("java -jar ChunkyAnimation-Standalone.jar --keyframe",
                         header, FrameKeyframes.OPTIONS, footer);
                 break;
+            case "p":
+            case "pack":
+                formatter.printHelp("java -jar ChunkyAnimation-Standalone.jar --pack",
+                        header, FramePacker.OPTIONS, footer);
+                break;
         }
         System.exit(0);
     }
@@ -3,6 +3,21 @@ package dev.thatredox.chunky.animate.standalone;
 import dev.thatredox.chunky.animate.animation.AnimationFrame;
 import dev.thatredox.chunky.animate.animation.AnimationKeyFrame;
 import dev.thatredox.chunky.animate.animation.AnimationUtils;
+import dev.thatredox.chunky.animate.animation.FolderFrameLoader;
+import dev.thatredox.chunky.animate.animation.FramePack;
+import dev.thatredox.chunky.animate.animation.FrameSource;
+import dev.thatredox.chunky.animate.animation.FrameTable;
+import dev.thatredox.chunky.animate.animation.PackedFrameSource;
+import dev.thatredox.chunky.animate.render.AdaptiveSampling;
+import dev.thatredox.chunky.animate.render.CheckpointContext;
+import dev.thatredox.chunky.animate.render.FrameDeduplicator;
+import dev.thatredox.chunky.animate.render.FrameQueue;
+import dev.thatredox.chunky.animate.render.FrameSelection;
+import dev.thatredox.chunky.animate.render.FrameWriter;
+import dev.thatredox.chunky.animate.render.RenderManifest;
+import dev.thatredox.chunky.animate.render.RenderReport;
+import dev.thatredox.chunky.animate.util.AnimationEvents;
+import dev.thatredox.chunky.animate.util.EtaEstimator;
 import it.unimi.dsi.fastutil.doubles.Double2ObjectRBTreeMap;
 import it.unimi.dsi.fastutil.doubles.Double2ObjectSortedMap;
 import org.apache.commons.cli.CommandLine;
@@ -18,19 +33,38 @@ import se.llbit.chunky.renderer.scene.Scene;
 import se.llbit.util.TaskTracker;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Field;
-import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AnimationRenderer {
     public static final Options OPTIONS;
     static {
         OPTIONS = new Options();
         OPTIONS.addRequiredOption("r", "render", false, "Required to enter rendering mode.");
-        OPTIONS.addRequiredOption("i", "input", true, "Path to the input frames. Can either be a folder of frames or a JSON of keyframes.");
+        OPTIONS.addRequiredOption("i", "input", true, "Path to the input frames. Can either be a folder of frames, a frame pack or a JSON of keyframes.");
         OPTIONS.addRequiredOption("s", "scene", true, "Scene to render. Must be path or resolvable scene name.");
         OPTIONS.addOption("o", "output", true, "Path to output rendered frames.");
         OPTIONS.addOption("f", "framerate", true, "Framerate to render in if using keyframes.");
         OPTIONS.addOption("t", "threads", true, "Number of threads to render with.");
+        OPTIONS.addOption(null, "load-threads", true, "Number of threads to parse frames with if using a folder of frames.");
+        OPTIONS.addOption(null, "write-threads", true, "Number of threads to save rendered frames with. 0 saves frames before rendering the next frame.");
+        OPTIONS.addOption(null, "resume", false, "Skip frames which the output manifest lists as already rendered with the same parameters and SPP.");
+        OPTIONS.addOption(null, "checkpoint", true, "Save a render dump every this many SPP so an interrupted frame can be continued with `--resume`. Dumps are saved next to the output frames as `frameNNNNN-<hash>.dump`.");
+        OPTIONS.addOption(null, "frames", true, "Range of frames to render, either `a-b`, `a-` or a single frame. Frames are numbered from 0.");
+        OPTIONS.addOption(null, "stride", true, "Render every n-th frame of the range.");
+        OPTIONS.addOption(null, "shard", true, "Render shard `k/n` of the frames, with `k` from 0 to `n-1`. Frames are dealt out round robin so every shard gets an even share.");
+        OPTIONS.addOption(null, "queue", true, "Shared folder to claim frames in with lock files. Workers rendering to the same output share the frames between themselves.");
+        OPTIONS.addOption(null, "lock-timeout", true, "Minutes after which a lock from an unresponsive worker is taken over. Default is 10.");
+        OPTIONS.addOption(null, "duplicates", true, "How to output frames with the same parameters as an earlier frame. One of `link` (hard link, default), `copy` or `render`.");
+        OPTIONS.addOption(null, "accumulate-holds", false, "Render runs of identical frames once with the SPP of the whole run.");
+        OPTIONS.addOption(null, "adaptive", false, "Stop rendering each frame once its noise estimate drops below `--noise-threshold`.");
+        OPTIONS.addOption(null, "min-spp", true, "Minimum SPP of each frame in adaptive mode. Default is 16.");
+        OPTIONS.addOption(null, "max-spp", true, "Maximum SPP of each frame in adaptive mode. Default is `--spp` or the scene's target SPP.");
+        OPTIONS.addOption(null, "spp-batch", true, "SPP between noise estimates in adaptive mode. Default is 16.");
+        OPTIONS.addOption(null, "noise-threshold", true, "Relative change in luminance between batches below which a frame is converged. Default is 0.01.");
+        OPTIONS.addOption(null, "report", true, "Path of the per frame render report. Written as CSV if it ends in `.csv`, JSON lines otherwise. Default is `report.jsonl` in the output folder.");
         OPTIONS.addOption("spp", true, "Override SPP.");
     }
 
@@ -44,6 +78,26 @@ public class AnimationRenderer {
         double framerate = Double.parseDouble(cmd.getOptionValue("framerate", "1.0"));
         int numThreads = Integer.parseInt(cmd.getOptionValue("threads", Integer.toString(PersistentSettings.getNumThreads())));
         int spp = Integer.parseInt(cmd.getOptionValue("spp", "-1"));
+        int loadThreads = Integer.parseInt(cmd.getOptionValue("load-threads",
+                Integer.toString(Runtime.getRuntime().availableProcessors())));
+        int writeThreads = Integer.parseInt(cmd.getOptionValue("write-threads", "1"));
+        boolean resume = cmd.hasOption("resume");
+        int checkpointSpp = Integer.parseInt(cmd.getOptionValue("checkpoint", "0"));
+        FrameSelection selection;
+        try {
+            selection = FrameSelection.parse(cmd.getOptionValue("frames"), cmd.getOptionValue("stride"),
+                    cmd.getOptionValue("shard"));
+        } catch (IllegalArgumentException e) {
+            System.err.printf("Invalid frame selection: %s\n", e.getMessage());
+            return 128;
+        }
+        String duplicates = cmd.getOptionValue("duplicates", "link");
+        if (!duplicates.equals("link") && !duplicates.equals("copy") && !duplicates.equals("render")) {
+            System.err.printf("Duplicates must be one of link, copy or render: %s\n", duplicates);
+            return 128;
+        }
+        boolean accumulateHolds = cmd.hasOption("accumulate-holds");
+        long lockTimeout = TimeUnit.MINUTES.toMillis(Long.parseLong(cmd.getOptionValue("lock-timeout", "10")));
 
         ChunkyOptions chunkyOptions = ChunkyOptions.getDefaults();
         chunkyOptions.renderThreads = numThreads;
@@ -61,18 +115,33 @@ public class AnimationRenderer {
         chunky.getSceneManager().loadScene(scenePath);
         Scene scene = chunky.getSceneManager().getScene();
 
-        ArrayList<AnimationFrame> animationFrames = new ArrayList<>();
+        FrameSource animationFrames;
         File inputFrames = new File(inputFramesPath);
         if (!inputFrames.exists()) {
             System.err.printf("Input frames path does not exist: %s\n", inputFramesPath);
             return 128;
         }
-        if (inputFrames.isDirectory()) {
-            AnimationUtils.loadFramesFromFolder(inputFrames, animationFrames, scene);
+        File framePack = inputFrames.isDirectory() ? FramePack.findPack(inputFrames) : null;
+        PackedFrameSource packedFrames = null;
+        if (framePack != null) {
+            try {
+                packedFrames = new PackedFrameSource(framePack, scene);
+            } catch (IOException e) {
+                System.err.printf("Failed to load frame pack %s, loading frames instead: %s\n", framePack.getName(),
+                        e.getMessage() != null ? e.getMessage() : e);
+            }
+        }
+        if (packedFrames != null) {
+            animationFrames = packedFrames;
+        } else if (inputFrames.isDirectory()) {
+            // Start rendering as soon as the first frames are loaded
+            animationFrames = new FolderFrameLoader(inputFrames, scene, new FrameTable(), loadThreads).start();
+        } else if (FramePack.isFramePack(inputFrames)) {
+            animationFrames = new PackedFrameSource(inputFrames, scene);
         } else {
             Double2ObjectSortedMap<AnimationKeyFrame> keyframes = new Double2ObjectRBTreeMap<>();
             AnimationUtils.loadKeyframes(inputFrames, keyframes);
-            AnimationUtils.loadFramesFromKeyframes(keyframes, framerate, animationFrames, scene);
+            animationFrames = AnimationUtils.framesFromKeyframes(keyframes, framerate, scene);
         }
 
         File outputDirectory = new File(outputPath);
@@ -83,7 +152,23 @@ public class AnimationRenderer {
             return 128;
         }
 
-        int numFrames = animationFrames.size();
+        int numFrames = selection.count(animationFrames.expectedSize());
+        AnimationFrame frame = new AnimationFrame(scene);
+        AnimationFrame nextFrame = new AnimationFrame(scene);
+        // Frame currently applied to the scene, so the next frame only sets the fields which changed
+        AnimationFrame appliedFrame = null;
+        FrameDeduplicator deduplicator = duplicates.equals("render") ? null : new FrameDeduplicator();
+        int baseSpp = spp != -1 ? spp : scene.getTargetSpp();
+        AdaptiveSampling adaptive = null;
+        if (cmd.hasOption("adaptive")) {
+            adaptive = new AdaptiveSampling(
+                    Integer.parseInt(cmd.getOptionValue("min-spp", "16")),
+                    Integer.parseInt(cmd.getOptionValue("max-spp", Integer.toString(baseSpp))),
+                    Integer.parseInt(cmd.getOptionValue("spp-batch", "16")),
+                    Double.parseDouble(cmd.getOptionValue("noise-threshold", "0.01")));
+            baseSpp = adaptive.getMaxSpp();
+        }
+        int requiredSpp = adaptive != null ? adaptive.getMinSpp() : baseSpp;
         long startTime = System.currentTimeMillis();
         TaskTracker taskTracker = new TaskTracker(new ConsoleProgressListener(),
                 (tracker, previous, name, size) -> new TaskTracker.Task(tracker, previous, name, size) {
@@ -95,46 +180,256 @@ public class AnimationRenderer {
                         System.out.format("\r%s took %dm %ds%n", name, seconds / 60, seconds % 60);
                     }
                 });
-        for (int i = 0; i < numFrames; i++) {
-            String etaString = "N/A";
-            if (i > 0) {
-                long etaSeconds = (((numFrames - i) * (System.currentTimeMillis() - startTime)) / (i * 1000L));
-                etaString = String.format("%d h, %02d min", etaSeconds / 3600, (etaSeconds / 60) % 60);
+        // One render manager is kept for the whole animation so its worker pool and buffers are reused. It is never
+        // started as a thread, instead each frame runs a single headless render on this thread.
+        DefaultRenderManager renderer = new DefaultRenderManager(chunky.getRenderContext(), true);
+        renderer.setSceneProvider((SceneProvider) chunky.getSceneManager());
+        FrameQueue queue = cmd.hasOption("queue") ? new FrameQueue(new File(cmd.getOptionValue("queue")), lockTimeout) : null;
+        // Each shard or worker keeps its own manifest and report, but frames rendered by any of them are skipped when
+        // resuming
+        String suffix = "";
+        if (selection.isSharded()) {
+            suffix = String.format("-%d-of-%d", selection.getShard(), selection.getShards());
+        } else if (queue != null) {
+            suffix = "-" + queue.getWorker().replaceAll("[^A-Za-z0-9_.-]", "_");
+        }
+        RenderManifest manifest = new RenderManifest(new File(outputDirectory, "manifest" + suffix + ".jsonl"),
+                resume ? RenderManifest.findManifests(outputDirectory) : new File[0]);
+        File reportFile = cmd.hasOption("report")
+                ? new File(cmd.getOptionValue("report"))
+                : new File(outputDirectory, "report" + suffix + ".jsonl");
+        RenderReport report = new RenderReport(reportFile, resume);
+
+        AtomicInteger samplesPerSecond = new AtomicInteger();
+        renderer.addRenderListener(new RenderStatusListener() {
+            @Override
+            public void setRenderTime(long time) {}
+
+            @Override
+            public void setSamplesPerSecond(int sps) {
+                samplesPerSecond.set(sps);
             }
-            System.out.printf("\nRendering frame %d out of %d. [ETA=%s]\n",
-                    i + 1, numFrames, etaString);
-            try (TaskTracker.Task renderTask = taskTracker.task("Rendering")) {
-                DefaultRenderManager renderer = new DefaultRenderManager(chunky.getRenderContext(), true);
-                renderer.setSceneProvider((SceneProvider) chunky.getSceneManager());
-                renderer.setSnapshotControl(new SnapshotControl() {
-                    @Override
-                    public boolean saveSnapshot(Scene scene, int nextSpp) {
-                        return false;
+
+            @Override
+            public void setSpp(int spp) {}
+
+            @Override
+            public void renderStateChanged(RenderMode state) {}
+        });
+        EtaEstimator eta = new EtaEstimator();
+        CheckpointContext checkpoints = new CheckpointContext(chunky, outputDirectory);
+        FrameSnapshotControl snapshotControl = new FrameSnapshotControl(checkpoints, scene, manifest,
+                checkpointSpp, adaptive);
+        renderer.setSnapshotControl(snapshotControl);
+
+        FrameWriter frameWriter = new FrameWriter(writeThreads, writeThreads + 1);
+        try {
+            int position = 0;
+            for (int i = selection.first(); selection.contains(i) && animationFrames.awaitFrame(i); i = selection.next(i)) {
+                position++;
+                animationFrames.load(i, frame);
+                long hash = frame.parameterHash();
+                File outputFile = new File(outputDirectory, String.format("frame%05d%s",
+                        i, scene.getOutputMode().getExtension()));
+                if (queue != null && !queue.claim(i)) {
+                    System.out.printf("\nSkipping frame %d (%d out of %d). Claimed by another worker.\n",
+                            i, position, numFrames);
+                    continue;
+                }
+                if (resume && manifest.isComplete(i, hash, requiredSpp, outputFile)) {
+                    System.out.printf("\nSkipping frame %d (%d out of %d). Already rendered.\n", i, position, numFrames);
+                    if (deduplicator != null) deduplicator.add(frame, outputFile, manifest.getCompleted(i).spp);
+                    if (queue != null) queue.complete(i);
+                    continue;
+                }
+
+                FrameDeduplicator.Entry original = deduplicator == null ? null : deduplicator.find(frame);
+                if (original != null) {
+                    // The original may still be waiting to be written
+                    frameWriter.flush();
+                    try {
+                        FrameDeduplicator.duplicate(original.output, outputFile, duplicates.equals("link"));
+                        System.out.printf("\nFrame %d (%d out of %d) is identical to %s.\n",
+                                i, position, numFrames, original.output.getName());
+                        manifest.frameComplete(i, hash, original.spp, outputFile.getName());
+                        if (queue != null) queue.complete(i);
+                        continue;
+                    } catch (IOException e) {
+                        System.err.printf("Failed to duplicate %s, rendering frame %d instead: %s\n",
+                                original.output.getName(), i, e.getMessage());
                     }
+                }
 
-                    @Override
-                    public boolean saveRenderDump(Scene scene, int nextSpp) {
-                        return false;
+                // Count the following frames with the same parameters
+                int hold = 1;
+                if (accumulateHolds && deduplicator != null) {
+                    for (int j = selection.next(i); selection.contains(j) && animationFrames.awaitFrame(j); j = selection.next(j)) {
+                        animationFrames.load(j, nextFrame);
+                        if (!nextFrame.sameParameters(frame)) break;
+                        hold++;
                     }
-                });
-                renderer.setRenderTask(renderTask);
+                }
+                int targetSpp = baseSpp * hold;
 
-                animationFrames.get(i).apply(scene);
-                if (spp != -1) {
-                    scene.setTargetSpp(spp);
+                String etaString = "N/A";
+                long etaMillis = eta.remainingMillis(numFrames - position + 1);
+                if (etaMillis >= 0) {
+                    long etaSeconds = etaMillis / 1000;
+                    etaString = String.format("%d h, %02d min", etaSeconds / 3600, (etaSeconds / 60) % 60);
                 }
-                scene.haltRender();
-                scene.startHeadlessRender();
+                System.out.printf("\nRendering frame %d (%d out of %d). [ETA=%s]\n",
+                        i, position, numFrames, etaString);
+                if (hold > 1) {
+                    System.out.printf("Accumulating %d identical frames at %d SPP.\n", hold, targetSpp);
+                }
+                try (TaskTracker.Task renderTask = taskTracker.task("Rendering")) {
+                    renderer.setRenderTask(renderTask);
 
-                renderer.start();
-                renderer.join();
-                renderer.shutdown();
+                    long applyStart = System.currentTimeMillis();
+                    RenderManifest.Entry checkpoint = manifest.getCheckpoint(i);
+                    synchronized (scene) {
+                        frame.applyDelta(scene, appliedFrame, i);
+                        scene.setTargetSpp(targetSpp);
+                        scene.haltRender();
+                        scene.forceReset();
+                        if (resume && checkpointSpp > 0 && checkpoint != null && checkpoint.hash == hash
+                                && checkpoints.getDump(checkpoint.file).isFile()) {
+                            System.out.printf("Continuing from render dump at %d SPP.\n", checkpoint.spp);
+                            checkpoints.select(i, hash);
+                            scene.loadDump(checkpoints, TaskTracker.NONE);
+                        }
+                        scene.startHeadlessRender();
+                    }
+                    if (appliedFrame == null) {
+                        appliedFrame = new AnimationFrame(frame);
+                    } else {
+                        appliedFrame.set(frame);
+                    }
+
+                    snapshotControl.startFrame(i, hash, hold);
+                    AnimationEvents.FrameRender renderEvent = new AnimationEvents.FrameRender(i);
+                    renderEvent.targetSpp = targetSpp;
+                    long renderStart = System.currentTimeMillis();
+                    renderEvent.begin();
+                    renderer.run();
+                    renderEvent.end();
+                    long renderEnd = System.currentTimeMillis();
 
-                renderer.bufferedScene.saveFrame(new File(outputDirectory, String.format("frame%05d%s",
-                        i, scene.getOutputMode().getExtension())), TaskTracker.NONE);
+                    int frameNumber = i;
+                    int sppReached = renderer.bufferedScene.getSpp();
+                    renderEvent.spp = sppReached;
+                    renderEvent.commit();
+                    RenderReport.FrameRecord record = new RenderReport.FrameRecord(i);
+                    record.timestamp = renderEnd;
+                    record.spp = sppReached;
+                    record.targetSpp = targetSpp;
+                    record.applyMillis = renderStart - applyStart;
+                    record.renderMillis = renderEnd - renderStart;
+                    record.samplesPerSecond = samplesPerSecond.get();
+                    if (adaptive != null) {
+                        System.out.printf("\nFrame %d rendered at %d SPP. [noise=%.4f]\n",
+                                i, sppReached, adaptive.getNoise());
+                    }
+                    if (deduplicator != null) deduplicator.add(frame, outputFile, sppReached);
+                    frameWriter.write(renderer.bufferedScene, i, outputFile, saveMillis -> {
+                        manifest.frameComplete(frameNumber, hash, sppReached, outputFile.getName());
+                        // The frame's checkpoint is not needed once it is saved
+                        if (checkpointSpp > 0) {
+                            checkpoints.getDump(CheckpointContext.fileName(frameNumber, hash)).delete();
+                        }
+                        if (queue != null) queue.complete(frameNumber);
+                        record.saveMillis = saveMillis;
+                        if (record.partDone()) report.write(record);
+                    }, () -> {
+                        // Let another worker render the frame
+                        if (queue != null) queue.release(frameNumber);
+                        record.saveMillis = -1;
+                        record.failed = true;
+                        if (record.partDone()) report.write(record);
+                    });
+                    long handoffEnd = System.currentTimeMillis();
+                    record.handoffMillis = handoffEnd - renderEnd;
+
+                    eta.add(handoffEnd - applyStart);
+                    long remaining = eta.remainingMillis(numFrames - position);
+                    record.etaSeconds = remaining < 0 ? -1 : remaining / 1000;
+                    if (record.partDone()) report.write(record);
+                }
+            }
+        } finally {
+            // Queued frames still write to the manifest and report once saved
+            try {
+                frameWriter.close();
+            } finally {
+                renderer.shutdown();
+                if (queue != null) queue.close();
+                manifest.close();
+                report.close();
             }
         }
 
+        if (frameWriter.getFailedSaves() > 0) {
+            System.err.printf("Failed to save %d frames.\n", frameWriter.getFailedSaves());
+            return 1;
+        }
         return 0;
     }
+
+    /**
+     * Saves a render dump every {@code interval} SPP and records it in the manifest. In adaptive mode this also stops
+     * the render once the frame has converged.
+     */
+    private static class FrameSnapshotControl implements SnapshotControl {
+        private final CheckpointContext context;
+        private final Scene liveScene;
+        private final RenderManifest manifest;
+        private final int interval;
+        private final AdaptiveSampling adaptive;
+
+        private int frame;
+        private long hash;
+        private int lastSpp;
+
+        FrameSnapshotControl(CheckpointContext context, Scene liveScene, RenderManifest manifest, int interval,
+                             AdaptiveSampling adaptive) {
+            this.context = context;
+            this.liveScene = liveScene;
+            this.manifest = manifest;
+            this.interval = interval;
+            this.adaptive = adaptive;
+        }
+
+        void startFrame(int frame, long hash, int hold) {
+            this.frame = frame;
+            this.hash = hash;
+            this.lastSpp = 0;
+            if (adaptive != null) adaptive.startFrame(hold);
+        }
+
+        @Override
+        public boolean saveSnapshot(Scene scene, int nextSpp) {
+            if (adaptive != null && adaptive.update(scene, scene.getSpp())) {
+                // The headless render ends once the target SPP is reached. Pausing would wait for a resume instead.
+                // Lower the target of the rendered scene and of the live scene, which it is copied from on a reset.
+                int spp = scene.getSpp();
+                scene.setTargetSpp(spp);
+                synchronized (liveScene) {
+                    liveScene.setTargetSpp(spp);
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean saveRenderDump(Scene scene, int nextSpp) {
+            if (interval <= 0 || nextSpp - lastSpp < interval || nextSpp >= scene.getTargetSpp()) {
+                return false;
+            }
+            lastSpp = nextSpp;
+            File dump = context.select(frame, hash);
+            scene.saveDump(context, TaskTracker.NONE);
+            manifest.checkpoint(frame, hash, scene.getSpp(), dump.getName());
+            return false;
+        }
+    }
 }
@@ -1,8 +1,5 @@
 package dev.thatredox.chunky.animate.standalone;
 
-import dev.thatredox.chunky.animate.animation.AnimationFrame;
-import dev.thatredox.chunky.animate.reflection.BooleanJsonField;
-import dev.thatredox.chunky.animate.reflection.DoubleJsonField;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -10,8 +7,12 @@ import org.apache.commons.cli.Options;
 import se.llbit.json.*;
 
 import java.io.*;
-import java.lang.reflect.Field;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class FrameKeyframes {
     public static final Options OPTIONS;
@@ -21,6 +22,10 @@ public class FrameKeyframes {
         OPTIONS.addRequiredOption("i", "input", true, "Path to folder containing input files.");
         OPTIONS.addOption("o", "output", true, "Path to folder to put output files. Defaults to `keyframes.json`.");
         OPTIONS.addOption(null, "overwrite", false, "Overwrite output file.");
+        OPTIONS.addOption(null, "time", true, "How to assign keyframe times. One of `animation` (the scene's animation time, default), `index` (the last number in the file name), `mtime` (file modification time) or `even` (evenly spaced in file name order).");
+        OPTIONS.addOption(null, "spacing", true, "Seconds per step for the `index` and `even` time policies. Default is 1.");
+        OPTIONS.addOption(null, "batch", false, "Never ask for keyframe times. Unreadable files and files without a time or with a duplicate time are skipped.");
+        OPTIONS.addOption(null, "threads", true, "Number of files to parse in parallel. Default is the number of processors.");
     }
 
     public static int fromKeyframes(String[] args) throws Exception {
@@ -36,87 +41,191 @@ public class FrameKeyframes {
 
         String outputPath = cmd.getOptionValue("output", "keyframes.json");
         File outputFile = new File(outputPath);
-        if ((outputFile.exists() || !outputFile.isFile()) && !cmd.hasOption("overwrite")) {
+        if (outputFile.exists() && !cmd.hasOption("overwrite")) {
             System.err.printf("Output file already exists. Use `--overwrite` to overwrite this file: %s\n", outputPath);
             return 128;
         }
 
-        Map<String, String> knownVariables = new HashMap<>();
-        for (Field field : AnimationFrame.class.getDeclaredFields()) {
-            String fieldPath = null;
-            BooleanJsonField booleanField = field.getAnnotation(BooleanJsonField.class);
-            if (booleanField != null) {
-                fieldPath = booleanField.value();
-            }
-            DoubleJsonField doubleField = field.getAnnotation(DoubleJsonField.class);
-            if (doubleField != null) {
-                fieldPath = doubleField.value();
-            }
+        TimePolicy timePolicy;
+        try {
+            timePolicy = TimePolicy.fromName(cmd.getOptionValue("time", "animation"),
+                    Double.parseDouble(cmd.getOptionValue("spacing", "1")));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return 128;
+        }
+        boolean batch = cmd.hasOption("batch");
+        int numThreads = Integer.parseInt(cmd.getOptionValue("threads",
+                Integer.toString(Runtime.getRuntime().availableProcessors())));
+
+        File[] inputFiles = inputFile.listFiles((dir, name) -> name.endsWith(".json"));
+        if (inputFiles == null) return 0;
+        Arrays.sort(inputFiles, Comparator.comparing(File::getName));
+
+        List<JsonObject> frames = parseFrames(inputFiles, numThreads);
+        int skipped = 0;
+        if (frames.contains(null)) {
+            if (!batch) return 1;
 
-            if (fieldPath != null) {
-                knownVariables.put(fieldPath, field.getName());
+            // Drop unreadable files before assigning times
+            List<File> readFiles = new ArrayList<>(inputFiles.length);
+            List<JsonObject> readFrames = new ArrayList<>(inputFiles.length);
+            for (int i = 0; i < inputFiles.length; i++) {
+                if (frames.get(i) == null) {
+                    System.err.printf("Skipping %s. Failed to read file.\n", inputFiles[i].getName());
+                    skipped++;
+                } else {
+                    readFiles.add(inputFiles[i]);
+                    readFrames.add(frames.get(i));
+                }
             }
+            inputFiles = readFiles.toArray(new File[0]);
+            frames = readFrames;
         }
+        double[] times = timePolicy.times(inputFiles, frames);
 
-        File[] inputFiles = inputFile.listFiles();
-        if (inputFiles == null) return 0;
         JsonObject keyframes = new JsonObject();
-        Scanner userInput = new Scanner(System.in);
-        for (File file : inputFiles) {
-            if (file.getName().endsWith(".json")) {
-                JsonObject frame = new JsonObject();
-                try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
-                    JsonParser jparse = new JsonParser(in);
-                    JsonObject inFrame = jparse.parse().asObject();
-                    filterPaths(inFrame, frame, new String[0], knownVariables);
+        Set<Double> usedTimes = new HashSet<>();
+        Scanner userInput = batch ? null : new Scanner(System.in);
+        for (int i = 0; i < inputFiles.length; i++) {
+            File file = inputFiles[i];
+            double frameTime = times[i];
+            if (Double.isNaN(frameTime) || usedTimes.contains(frameTime)) {
+                if (batch) {
+                    System.err.printf("Skipping %s. %s.\n", file.getName(),
+                            Double.isNaN(frameTime) ? "No keyframe time" : "Duplicate keyframe time " + frameTime);
+                    skipped++;
+                    continue;
                 }
-                frame.set("keyframeName", Json.of(file.getName().split("\\.json")[0]));
-
-                double frameTime = frame.get("animationTime").doubleValue(Double.NaN);
-                while (Double.isNaN(frameTime) || !keyframes.get(Double.toString(frameTime)).isUnknown()) {
+                do {
                     System.out.printf("Enter frame time for %s:\n", file.getName());
                     frameTime = userInput.nextDouble();
-                    if (Double.isNaN(frameTime) || !keyframes.get(Double.toString(frameTime)).isUnknown()) {
+                    if (Double.isNaN(frameTime) || usedTimes.contains(frameTime)) {
                         System.out.printf("Invalid time %f. ", frameTime);
                     }
-                }
-
-                keyframes.set(Double.toString(frameTime), frame);
+                } while (Double.isNaN(frameTime) || usedTimes.contains(frameTime));
             }
+            usedTimes.add(frameTime);
+
+            JsonObject frame = frames.get(i);
+            frame.set("keyframeName", Json.of(file.getName().split("\\.json")[0]));
+            keyframes.set(Double.toString(frameTime), frame);
         }
 
-        try (PrintStream os = new PrintStream(new BufferedOutputStream(new FileOutputStream(outputFile)))) {
-            PrettyPrinter pp = new PrettyPrinter("  ", os);
-            keyframes.prettyPrint(pp);
+        try {
+            FrameTrimmer.writeJson(keyframes, outputFile);
+        } catch (IOException e) {
+            System.err.printf("Failed to write %s: %s\n", outputFile.getPath(),
+                    e.getMessage() != null ? e.getMessage() : e);
+            return 1;
         }
-        return 0;
+        System.out.printf("Wrote %d keyframes to %s\n", usedTimes.size(), outputFile.getPath());
+        return skipped == 0 ? 0 : 1;
     }
 
-    private static boolean filterPaths(JsonObject source, JsonObject dest, String[] path, Map<String, String> knownPaths) {
-        String[] newPath = Arrays.copyOf(path, path.length+1);
-        boolean anyHits = false;
-        for (Map.Entry<String, JsonValue> entry : source.toMap().entrySet()) {
-            newPath[newPath.length-1] = entry.getKey();
-            String compiledPath = compilePath(newPath);
-            if (knownPaths.containsKey(compiledPath)) {
-                dest.set(knownPaths.get(compiledPath), entry.getValue());
-                anyHits = true;
+    /**
+     * Parse the animated fields of every file in parallel.
+     *
+     * @return Keyframes with the fields by field name, in the same order as the files. Null for files which failed.
+     */
+    private static List<JsonObject> parseFrames(File[] files, int threads) throws Exception {
+        Map<String, String> fieldNames = JsonPathFilter.animatedFields();
+        JsonPathFilter filter = new JsonPathFilter(fieldNames.keySet());
+
+        ExecutorService parsers = Executors.newFixedThreadPool(Math.max(threads, 1));
+        try {
+            List<Future<JsonObject>> pending = new ArrayList<>(files.length);
+            for (File file : files) {
+                pending.add(parsers.submit(() -> {
+                    Map<String, JsonValue> matches;
+                    try (InputStream in = new FileInputStream(file)) {
+                        matches = filter.match(in);
+                    } catch (IOException | RuntimeException e) {
+                        System.err.printf("Failed to read %s: %s\n", file.getName(),
+                                e.getMessage() != null ? e.getMessage() : e);
+                        return null;
+                    }
+                    JsonObject frame = new JsonObject();
+                    for (Map.Entry<String, JsonValue> match : matches.entrySet()) {
+                        frame.set(fieldNames.get(match.getKey()), match.getValue());
+                    }
+                    return frame;
+                }));
             }
 
-            if (entry.getValue().isObject()) {
-                anyHits |= filterPaths(entry.getValue().asObject(), dest, newPath, knownPaths);
+            List<JsonObject> frames = new ArrayList<>(files.length);
+            for (Future<JsonObject> future : pending) {
+                frames.add(future.get());
             }
+            return frames;
+        } finally {
+            parsers.shutdownNow();
         }
-        return anyHits;
     }
 
-    private static String compilePath(String[] path) {
-        StringBuilder builder = new StringBuilder();
-        for (int i = 0; i < path.length-1; i++) {
-            builder.append(path[i]);
-            builder.append(".");
+    /**
+     * Assigns a time to every keyframe.
+     */
+    public interface TimePolicy {
+        /**
+         * @param files  Input files, sorted by name.
+         * @param frames Parsed keyframes with the fields by field name, in the same order as the files.
+         * @return Time of each keyframe in seconds. NaN if a keyframe has no time.
+         */
+        double[] times(File[] files, List<JsonObject> frames);
+
+        static TimePolicy fromName(String name, double spacing) {
+            switch (name) {
+                case "animation":
+                    return TimePolicy::animationTime;
+                case "index":
+                    return (files, frames) -> fileIndex(files, spacing);
+                case "mtime":
+                    return (files, frames) -> modificationTime(files);
+                case "even":
+                    return (files, frames) -> {
+                        double[] times = new double[files.length];
+                        for (int i = 0; i < times.length; i++) {
+                            times[i] = i * spacing;
+                        }
+                        return times;
+                    };
+                default:
+                    throw new IllegalArgumentException("Unknown time policy: " + name);
+            }
+        }
+
+        static double[] animationTime(File[] files, List<JsonObject> frames) {
+            double[] times = new double[frames.size()];
+            for (int i = 0; i < times.length; i++) {
+                times[i] = frames.get(i).get("animationTime").doubleValue(Double.NaN);
+            }
+            return times;
+        }
+
+        static double[] fileIndex(File[] files, double spacing) {
+            Pattern number = Pattern.compile("(\\d+)(?!.*\\d)");
+            double[] times = new double[files.length];
+            for (int i = 0; i < times.length; i++) {
+                Matcher matcher = number.matcher(files[i].getName());
+                times[i] = matcher.find() ? Double.parseDouble(matcher.group(1)) * spacing : Double.NaN;
+            }
+            return times;
+        }
+
+        /**
+         * Seconds since the oldest file was modified.
+         */
+        static double[] modificationTime(File[] files) {
+            double[] times = new double[files.length];
+            long first = Long.MAX_VALUE;
+            for (File file : files) {
+                first = Math.min(first, file.lastModified());
+            }
+            for (int i = 0; i < times.length; i++) {
+                times[i] = (files[i].lastModified() - first) / 1000.0;
+            }
+            return times;
         }
-        builder.append(path[path.length-1]);
-        return builder.toString();
     }
 }
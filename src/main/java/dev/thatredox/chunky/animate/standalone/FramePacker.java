@@ -0,0 +1,48 @@
+package dev.thatredox.chunky.animate.standalone;
+
+import dev.thatredox.chunky.animate.animation.FramePack;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Options;
+
+import java.io.File;
+
+public class FramePacker {
+    public static final Options OPTIONS;
+    static {
+        OPTIONS = new Options();
+        OPTIONS.addRequiredOption("p", "pack", false, "Required to enter packing mode.");
+        OPTIONS.addRequiredOption("i", "input", true, "Path to folder containing input frames.");
+        OPTIONS.addOption("o", "output", true, "Path to the output frame pack. Default is `frames" + FramePack.EXTENSION + "` in the input folder.");
+        OPTIONS.addOption(null, "threads", true, "Number of threads to parse frames with.");
+    }
+
+    public static int packFrames(String[] args) throws Exception {
+        CommandLineParser parser = new DefaultParser();
+        CommandLine cmd = parser.parse(OPTIONS, args, false);
+
+        String inputPath = cmd.getOptionValue("input");
+        File inputFolder = new File(inputPath);
+        if (!inputFolder.exists() || !inputFolder.isDirectory()) {
+            System.err.printf("Input must be path to a folder containing input frames: %s\n", inputPath);
+            return 128;
+        }
+
+        File outputFile = new File(inputFolder, "frames" + FramePack.EXTENSION);
+        if (cmd.hasOption("output")) {
+            outputFile = new File(cmd.getOptionValue("output"));
+        }
+        int numThreads = Integer.parseInt(cmd.getOptionValue("threads",
+                Integer.toString(Runtime.getRuntime().availableProcessors())));
+
+        int numFrames = FramePack.pack(inputFolder, outputFile, numThreads, (progress, total) -> {
+            if (progress % 64 == 0 || progress == total) {
+                System.out.printf("\rLoading frame %d out of %d", progress, total);
+            }
+            return true;
+        });
+        System.out.printf("\nPacked %d frames into %s\n", numFrames, outputFile.getPath());
+        return 0;
+    }
+}
@@ -1,23 +1,23 @@
 package dev.thatredox.chunky.animate.standalone;
 
-import dev.thatredox.chunky.animate.animation.AnimationFrame;
-import dev.thatredox.chunky.animate.reflection.BooleanJsonField;
-import dev.thatredox.chunky.animate.reflection.DoubleJsonField;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.Options;
 import se.llbit.json.JsonObject;
-import se.llbit.json.JsonParser;
-import se.llbit.json.JsonValue;
 import se.llbit.json.PrettyPrinter;
 
 import java.io.*;
-import java.lang.reflect.Field;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Map;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FrameTrimmer {
     public static final Options OPTIONS;
@@ -26,6 +26,7 @@ public class FrameTrimmer {
         OPTIONS.addRequiredOption("t", "trim", false, "Required to enter trimming mode.");
         OPTIONS.addRequiredOption("i", "input", true, "Path to folder containing input files.");
         OPTIONS.addOption("o", "output", true, "Path to folder to put output files. Default overwrites input files.");
+        OPTIONS.addOption(null, "threads", true, "Number of files to trim in parallel. Default is the number of processors.");
     }
 
     public static int trimFrames(String[] args) throws Exception {
@@ -50,78 +51,84 @@ public class FrameTrimmer {
             }
         }
 
-        Set<String> knownPaths = new HashSet<>();
-        for (Field field : AnimationFrame.class.getDeclaredFields()) {
-            String fieldPath = null;
-            BooleanJsonField booleanField = field.getAnnotation(BooleanJsonField.class);
-            if (booleanField != null) {
-                fieldPath = booleanField.value();
-            }
-            DoubleJsonField doubleField = field.getAnnotation(DoubleJsonField.class);
-            if (doubleField != null) {
-                fieldPath = doubleField.value();
-            }
+        int numThreads = Integer.parseInt(cmd.getOptionValue("threads",
+                Integer.toString(Runtime.getRuntime().availableProcessors())));
 
-            if (fieldPath != null) {
-                knownPaths.add(fieldPath);
-            }
-        }
+        JsonPathFilter filter = new JsonPathFilter(knownPaths());
 
-        File[] inputFiles = inputFile.listFiles();
+        File[] inputFiles = inputFile.listFiles((dir, name) -> name.endsWith(".json"));
         if (inputFiles == null) return 0;
-        for (File file : inputFiles) {
-            if (file.getName().endsWith(".json")) {
-                JsonObject outFrame = new JsonObject();
-                try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
-                    JsonParser jparse = new JsonParser(in);
-                    JsonObject inFrame = jparse.parse().asObject();
-                    filterPaths(inFrame, outFrame, new String[0], knownPaths);
-                }
 
-                File outFile;
-                if (outputPath == null) {
-                    outFile = file;
-                } else {
-                    outFile = new File(outputFolder, file.getName());
-                }
-                try (PrintStream os = new PrintStream(new BufferedOutputStream(new FileOutputStream(outFile)))) {
-                    PrettyPrinter pp = new PrettyPrinter("  ", os);
-                    outFrame.prettyPrint(pp);
-                }
+        ExecutorService trimmers = Executors.newFixedThreadPool(Math.max(numThreads, 1));
+        AtomicInteger trimmed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        try {
+            List<Future<?>> pending = new ArrayList<>(inputFiles.length);
+            for (File file : inputFiles) {
+                File outFile = outputFolder == null ? file : new File(outputFolder, file.getName());
+                pending.add(trimmers.submit(() -> {
+                    try {
+                        trim(file, outFile, filter);
+                    } catch (IOException | RuntimeException e) {
+                        failed.incrementAndGet();
+                        System.err.printf("\nFailed to trim %s: %s\n", file.getName(),
+                                e.getMessage() != null ? e.getMessage() : e);
+                        return;
+                    }
+                    int count = trimmed.incrementAndGet();
+                    if (count % 64 == 0 || count == inputFiles.length) {
+                        System.out.printf("\rTrimmed %d out of %d frames", count, inputFiles.length);
+                    }
+                }));
+            }
+            for (Future<?> future : pending) {
+                future.get();
             }
+        } finally {
+            trimmers.shutdownNow();
         }
-        return 0;
+        System.out.println();
+        return failed.get() == 0 ? 0 : 1;
     }
 
-    private static boolean filterPaths(JsonObject source, JsonObject dest, String[] path, Set<String> knownPaths) {
-        String[] newPath = Arrays.copyOf(path, path.length+1);
-        boolean anyHits = false;
-        for (Map.Entry<String, JsonValue> entry : source.toMap().entrySet()) {
-            newPath[newPath.length-1] = entry.getKey();
-            String compiledPath = compilePath(newPath);
-            if (knownPaths.contains(compiledPath)) {
-                dest.set(entry.getKey(), entry.getValue());
-                anyHits = true;
-            }
+    /**
+     * Trim a single scene file. The input is read completely before the output is written, so both may be the same
+     * file.
+     */
+    static void trim(File in, File out, JsonPathFilter filter) throws IOException {
+        JsonObject outFrame;
+        try (InputStream is = new FileInputStream(in)) {
+            outFrame = filter.filter(is);
+        }
+        writeJson(outFrame, out);
+    }
 
-            if (entry.getValue().isObject()) {
-                JsonObject tempDest = new JsonObject();
-                if (filterPaths(entry.getValue().asObject(), tempDest, newPath, knownPaths)) {
-                    dest.set(entry.getKey(), tempDest);
-                    anyHits = true;
-                }
+    /**
+     * Pretty print JSON to a temporary file next to {@code out} and move it into place, so a failed write leaves an
+     * existing file untouched.
+     */
+    static void writeJson(JsonObject json, File out) throws IOException {
+        Path temp = Files.createTempFile(out.getAbsoluteFile().getParentFile().toPath(), "." + out.getName(), ".tmp");
+        try {
+            // PrintStream does not throw, so check for errors once it is closed
+            PrintStream os = new PrintStream(new BufferedOutputStream(Files.newOutputStream(temp)));
+            try {
+                json.prettyPrint(new PrettyPrinter("  ", os));
+            } finally {
+                os.close();
             }
+            if (os.checkError()) throw new IOException("Failed to write " + out.getPath());
+            Files.move(temp, out.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+        } finally {
+            if (temp != null) Files.deleteIfExists(temp);
         }
-        return anyHits;
     }
 
-    private static String compilePath(String[] path) {
-        StringBuilder builder = new StringBuilder();
-        for (int i = 0; i < path.length-1; i++) {
-            builder.append(path[i]);
-            builder.append(".");
-        }
-        builder.append(path[path.length-1]);
-        return builder.toString();
+    /**
+     * JSON paths of every animated field.
+     */
+    static Set<String> knownPaths() {
+        return JsonPathFilter.animatedFields().keySet();
     }
 }
@@ -0,0 +1,320 @@
+package dev.thatredox.chunky.animate.standalone;
+
+import dev.thatredox.chunky.animate.animation.FrameSchema;
+import se.llbit.json.JsonObject;
+import se.llbit.json.JsonParser;
+import se.llbit.json.JsonValue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Extracts a set of dotted paths from a JSON document while reading it. Object keys are matched against a trie of
+ * the paths as they are read, and values outside the trie are skipped byte by byte without being parsed. Only the
+ * matched values are parsed into JSON values.
+ * <p>
+ * The scanner works on the raw UTF-8 bytes. Multi-byte UTF-8 sequences never contain ASCII bytes, so the structural
+ * characters can be found without decoding. A filter may be shared between threads.
+ */
+final class JsonPathFilter {
+    private final Node root = new Node();
+
+    JsonPathFilter(Collection<String> paths) {
+        for (String path : paths) {
+            Node node = root;
+            for (String level : path.split("\\.")) {
+                node = node.children.computeIfAbsent(level, k -> new Node());
+            }
+            node.path = path;
+        }
+    }
+
+    /**
+     * Field names of every animated field stored in scene JSON, by JSON path.
+     */
+    static Map<String, String> animatedFields() {
+        Map<String, String> fields = new LinkedHashMap<>();
+        for (FrameSchema.DoubleAccessor field : FrameSchema.doubles()) {
+            if (field.jsonPath != null) fields.put(field.jsonPath, field.name);
+        }
+        for (FrameSchema.BooleanAccessor field : FrameSchema.booleans()) {
+            if (field.jsonPath != null) fields.put(field.jsonPath, field.name);
+        }
+        return fields;
+    }
+
+    /**
+     * Read a JSON object and keep only the values at the filter's paths. A matched path keeps its whole value, even
+     * if longer paths below it are in the filter as well.
+     *
+     * @return The matched values. Objects without any matched values are left out.
+     */
+    JsonObject filter(InputStream in) throws IOException {
+        Scanner scanner = new Scanner(in, null);
+        JsonObject result = scanner.document(root);
+        return result == null ? new JsonObject() : result;
+    }
+
+    /**
+     * Read a JSON object and collect the values at the filter's paths.
+     *
+     * @return The matched values by dotted path, in the order they appear in the input.
+     */
+    Map<String, JsonValue> match(InputStream in) throws IOException {
+        Map<String, JsonValue> matches = new LinkedHashMap<>();
+        new Scanner(in, matches).document(root);
+        return matches;
+    }
+
+    private static final class Node {
+        final Map<String, Node> children = new HashMap<>();
+
+        /**
+         * Full path if this node ends a path, otherwise null.
+         */
+        String path = null;
+    }
+
+    private static final class Scanner {
+        private final InputStream in;
+        private final byte[] buffer = new byte[1 << 16];
+        private int position = 0;
+        private int limit = 0;
+        private long offset = 0;
+
+        private byte[] capture = new byte[64];
+        private int captureLength = 0;
+        private boolean capturing = false;
+
+        private byte[] key = new byte[64];
+
+        /**
+         * Matched values by path, or null to build a filtered object instead.
+         */
+        private final Map<String, JsonValue> matches;
+
+        Scanner(InputStream in, Map<String, JsonValue> matches) {
+            this.in = in;
+            this.matches = matches;
+        }
+
+        JsonObject document(Node root) throws IOException {
+            if (peek() != '{') throw error("Expected an object");
+            JsonObject result = filterObject(root);
+            if (peek() != -1) throw error("Unexpected data after the object");
+            return result;
+        }
+
+        private boolean fill() throws IOException {
+            offset += limit;
+            position = 0;
+            limit = Math.max(in.read(buffer), 0);
+            return limit > 0;
+        }
+
+        /**
+         * Next byte, or -1 at the end of the input.
+         */
+        private int read() throws IOException {
+            if (position == limit && !fill()) return -1;
+            byte b = buffer[position++];
+            if (capturing) {
+                if (captureLength == capture.length) capture = Arrays.copyOf(capture, captureLength * 2);
+                capture[captureLength++] = b;
+            }
+            return b & 0xFF;
+        }
+
+        /**
+         * Skip whitespace and return the next byte without consuming it, or -1 at the end of the input.
+         */
+        private int peek() throws IOException {
+            while (true) {
+                if (position == limit && !fill()) return -1;
+                int b = buffer[position] & 0xFF;
+                if (b != ' ' && b != '\n' && b != '\r' && b != '\t') return b;
+                position++;
+            }
+        }
+
+        private void expect(int expected) throws IOException {
+            if (peek() != expected) throw error("Expected '" + (char) expected + "'");
+            read();
+        }
+
+        private IOException error(String message) {
+            return new IOException(message + " at byte " + (offset + position));
+        }
+
+        /**
+         * Read an object, keeping only the members below {@code node}.
+         *
+         * @return The kept members, or null if there are none.
+         */
+        JsonObject filterObject(Node node) throws IOException {
+            expect('{');
+            JsonObject result = null;
+            if (peek() == '}') {
+                read();
+                return null;
+            }
+            while (true) {
+                String name = readKey();
+                expect(':');
+
+                Node child = node.children.get(name);
+                JsonValue value = null;
+                if (child == null) {
+                    skipValue();
+                } else if (child.path != null) {
+                    value = captureValue();
+                    if (matches != null) {
+                        matches.put(child.path, value);
+                        value = null;
+                    }
+                } else if (peek() == '{') {
+                    value = filterObject(child);
+                } else {
+                    skipValue();
+                }
+                if (value != null) {
+                    if (result == null) result = new JsonObject();
+                    result.set(name, value);
+                }
+
+                int next = peek();
+                read();
+                if (next == '}') return result;
+                if (next != ',') throw error("Expected ',' or '}'");
+            }
+        }
+
+        private String readKey() throws IOException {
+            if (peek() != '"') throw error("Expected a key");
+            read();
+            int length = 0;
+            boolean escaped = false;
+            while (true) {
+                int b = read();
+                if (b == -1) throw error("Unterminated key");
+                if (b == '"') break;
+                if (b == '\\') {
+                    escaped = true;
+                    if (length == key.length) key = Arrays.copyOf(key, length * 2);
+                    key[length++] = (byte) b;
+                    b = read();
+                    if (b == -1) throw error("Unterminated key");
+                }
+                if (length == key.length) key = Arrays.copyOf(key, length * 2);
+                key[length++] = (byte) b;
+            }
+            String name = new String(key, 0, length, StandardCharsets.UTF_8);
+            return escaped ? unescape(name) : name;
+        }
+
+        private void skipValue() throws IOException {
+            int b = peek();
+            if (b == '"') {
+                read();
+                skipString();
+            } else if (b == '{' || b == '[') {
+                int depth = 0;
+                do {
+                    b = read();
+                    if (b == -1) throw error("Unterminated value");
+                    if (b == '"') {
+                        skipString();
+                    } else if (b == '{' || b == '[') {
+                        depth++;
+                    } else if (b == '}' || b == ']') {
+                        depth--;
+                    }
+                } while (depth > 0);
+            } else if (b == -1 || b == ',' || b == '}' || b == ']') {
+                throw error("Expected a value");
+            } else {
+                // Number, true, false or null
+                while (true) {
+                    if (position == limit && !fill()) return;
+                    b = buffer[position] & 0xFF;
+                    if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t') return;
+                    read();
+                }
+            }
+        }
+
+        /**
+         * Skip the rest of a string after its opening quote.
+         */
+        private void skipString() throws IOException {
+            while (true) {
+                int b = read();
+                if (b == '"') return;
+                if (b == '\\') b = read();
+                if (b == -1) throw error("Unterminated string");
+            }
+        }
+
+        /**
+         * Read a value and parse it. Only matched values are parsed, so these are few and small.
+         */
+        private JsonValue captureValue() throws IOException {
+            peek();
+            captureLength = 0;
+            capturing = true;
+            try {
+                skipValue();
+            } finally {
+                capturing = false;
+            }
+
+            // The parser reads whole documents, so parse the value as the member of an object
+            byte[] wrapped = new byte[captureLength + 6];
+            System.arraycopy("{\"v\":".getBytes(StandardCharsets.US_ASCII), 0, wrapped, 0, 5);
+            System.arraycopy(capture, 0, wrapped, 5, captureLength);
+            wrapped[wrapped.length - 1] = '}';
+            try (JsonParser parser = new JsonParser(new ByteArrayInputStream(wrapped))) {
+                return parser.parse().asObject().get("v");
+            } catch (JsonParser.SyntaxError e) {
+                throw error("Invalid value");
+            }
+        }
+
+        private String unescape(String escaped) throws IOException {
+            StringBuilder builder = new StringBuilder(escaped.length());
+            for (int i = 0; i < escaped.length(); i++) {
+                char c = escaped.charAt(i);
+                if (c != '\\') {
+                    builder.append(c);
+                    continue;
+                }
+                c = escaped.charAt(++i);
+                switch (c) {
+                    case 'b': builder.append('\b'); break;
+                    case 'f': builder.append('\f'); break;
+                    case 'n': builder.append('\n'); break;
+                    case 'r': builder.append('\r'); break;
+                    case 't': builder.append('\t'); break;
+                    case 'u':
+                        if (i + 4 >= escaped.length()) throw error("Invalid escape");
+                        try {
+                            builder.append((char) Integer.parseInt(escaped.substring(i + 1, i + 5), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Invalid escape");
+                        }
+                        i += 4;
+                        break;
+                    default: builder.append(c);
+                }
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package dev.thatredox.chunky.animate.util;
+
+import dev.thatredox.chunky.animate.animation.FrameSchema;
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder events for the animation pipeline. Record them with {@code -XX:StartFlightRecording}.
+ * <p>
+ * Events cost almost nothing while no recording is running. Each event is begun with {@code begin()} and recorded
+ * with {@code commit()}.
+ */
+public final class AnimationEvents {
+    private static final String CATEGORY = "Chunky Animate";
+
+    private AnimationEvents() {}
+
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public abstract static class FrameEvent extends Event {
+        @Label("Frame")
+        @Description("Index of the frame, or -1 if unknown")
+        public int frame;
+
+        @Label("Double Fields")
+        public int doubleFields;
+
+        @Label("Boolean Fields")
+        public int booleanFields;
+
+        protected FrameEvent(int frame) {
+            this.frame = frame;
+            this.doubleFields = FrameSchema.doubles().length;
+            this.booleanFields = FrameSchema.booleans().length;
+        }
+    }
+
+    @Name("dev.thatredox.chunky.animate.FrameGeneration")
+    @Label("Frame Generation")
+    @Description("Building the frames of an animation from keyframes or a folder of scene files")
+    public static class FrameGeneration extends FrameEvent {
+        @Label("Source")
+        public String source;
+
+        @Label("Frame Count")
+        public int frameCount;
+
+        public FrameGeneration(String source) {
+            super(-1);
+            this.source = source;
+        }
+    }
+
+    @Name("dev.thatredox.chunky.animate.FrameApply")
+    @Label("Frame Apply")
+    @Description("Applying the parameters of a frame to the scene")
+    public static class FrameApply extends FrameEvent {
+        @Label("Delta")
+        @Description("Only the fields which changed since the previous frame were applied")
+        public boolean delta;
+
+        public FrameApply(int frame) {
+            super(frame);
+        }
+    }
+
+    @Name("dev.thatredox.chunky.animate.FrameRender")
+    @Label("Frame Render")
+    @Description("Rendering a frame until it reached its target SPP")
+    public static class FrameRender extends FrameEvent {
+        @Label("SPP")
+        public int spp;
+
+        @Label("Target SPP")
+        public int targetSpp;
+
+        public FrameRender(int frame) {
+            super(frame);
+        }
+    }
+
+    @Name("dev.thatredox.chunky.animate.FrameSave")
+    @Label("Frame Save")
+    @Description("Post processing and writing a rendered frame")
+    public static class FrameSave extends FrameEvent {
+        @Label("File")
+        public String file;
+
+        @Label("Asynchronous")
+        @Description("Saved on a frame writer thread")
+        public boolean asynchronous;
+
+        public FrameSave(int frame, String file) {
+            super(frame);
+            this.file = file;
+        }
+    }
+}
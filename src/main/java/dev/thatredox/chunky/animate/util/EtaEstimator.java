@@ -0,0 +1,49 @@
+package dev.thatredox.chunky.animate.util;
+
+/**
+ * Estimates the remaining time of an animation from an exponentially weighted moving average of the frame times.
+ * Recent frames count the most, so the estimate follows changes in frame cost through the animation.
+ */
+public class EtaEstimator {
+    public static final double DEFAULT_ALPHA = 0.2;
+
+    private final double alpha;
+    private double average = -1;
+
+    /**
+     * @param alpha Weight of the newest frame, between 0 and 1.
+     */
+    public EtaEstimator(double alpha) {
+        this.alpha = alpha;
+    }
+
+    public EtaEstimator() {
+        this(DEFAULT_ALPHA);
+    }
+
+    public synchronized void reset() {
+        average = -1;
+    }
+
+    /**
+     * Add the time taken by a frame.
+     */
+    public synchronized void add(long frameMillis) {
+        average = average < 0 ? frameMillis : alpha * frameMillis + (1 - alpha) * average;
+    }
+
+    /**
+     * Average frame time in milliseconds, or -1 if no frame has been added.
+     */
+    public synchronized double getAverageMillis() {
+        return average;
+    }
+
+    /**
+     * Estimated time to render a number of frames in milliseconds, or -1 if no frame has been added.
+     */
+    public synchronized long remainingMillis(int remainingFrames) {
+        if (average < 0) return -1;
+        return (long) (average * Math.max(remainingFrames, 0));
+    }
+}
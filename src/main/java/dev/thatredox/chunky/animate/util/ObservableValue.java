@@ -1,9 +1,17 @@
 package dev.thatredox.chunky.animate.util;
 
+import se.llbit.log.Log;
+
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * A value which notifies listeners when it changes. Listeners are called on a single daemon thread shared by every
+ * observable value. Changes are coalesced, so a listener which falls behind is only called with the latest value and
+ * a value never has more than one notification queued.
+ */
 public class ObservableValue<T> {
     public interface ChangeListener<T> {
         void onChange(T newValue);
@@ -29,11 +37,24 @@ public class ObservableValue<T> {
         }
     }
 
-    protected final ExecutorService executor = Executors.newSingleThreadExecutor(
-            r -> new Thread(r, "ObservableValue Update Thread"));
+    private static final ExecutorService DISPATCHER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "ObservableValue Update Thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Marks that no notification is pending, since the value itself may be null.
+     */
+    private static final Object NONE = new Object();
 
     protected final CopyOnWriteArraySet<ChangeListener<T>> changeListeners = new CopyOnWriteArraySet<>();
-    protected T value;
+    protected volatile T value;
+
+    /**
+     * Value of the queued notification, or {@link #NONE} if no notification is queued.
+     */
+    private final AtomicReference<Object> pending = new AtomicReference<>(NONE);
 
     public ObservableValue(T initialValue) {
         this.value = initialValue;
@@ -56,8 +77,26 @@ public class ObservableValue<T> {
         this.update(this.value);
     }
 
+    /**
+     * Notify the listeners of a value. If a notification is already queued, it is replaced by this value.
+     */
     public void update(T newValue) {
-        changeListeners.forEach(listener -> executor.execute(() -> listener.onChange(newValue)));
+        if (pending.getAndSet(newValue) == NONE) {
+            DISPATCHER.execute(this::dispatch);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void dispatch() {
+        Object newValue = pending.getAndSet(NONE);
+        if (newValue == NONE) return;
+        for (ChangeListener<T> listener : changeListeners) {
+            try {
+                listener.onChange((T) newValue);
+            } catch (RuntimeException e) {
+                Log.error("Observable value listener failed", e);
+            }
+        }
     }
 
     public void addListener(ChangeListener<T> listener) {
@@ -0,0 +1,115 @@
+package dev.thatredox.chunky.animate.render;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameQueueTest {
+    private static final long TIMEOUT = 60_000;
+
+    @TempDir
+    File directory;
+
+    @Test
+    void claimHeldLock() throws Exception {
+        try (FrameQueue first = new FrameQueue(directory, TIMEOUT);
+             FrameQueue second = new FrameQueue(directory, TIMEOUT)) {
+            assertTrue(first.claim(0));
+            assertFalse(second.claim(0));
+            assertFalse(first.claim(0));
+            assertTrue(second.claim(1));
+        }
+    }
+
+    @Test
+    void claimFreshForeignLock() throws Exception {
+        Path lock = lock(0, "other", System.currentTimeMillis());
+        try (FrameQueue queue = new FrameQueue(directory, TIMEOUT)) {
+            assertFalse(queue.claim(0));
+        }
+        assertEquals("other", new String(Files.readAllBytes(lock), StandardCharsets.UTF_8));
+        assertEquals(1, directory.list().length);
+    }
+
+    @Test
+    void takeOverStaleLock() throws Exception {
+        Path lock = lock(0, "other", System.currentTimeMillis() - 2 * TIMEOUT);
+        try (FrameQueue queue = new FrameQueue(directory, TIMEOUT)) {
+            assertTrue(queue.claim(0));
+            assertEquals(queue.getWorker(), new String(Files.readAllBytes(lock), StandardCharsets.UTF_8));
+            // The lock moved aside during the take over is gone
+            assertEquals(1, directory.list().length);
+        }
+    }
+
+    @Test
+    void heartbeatKeepsLockFresh() throws Exception {
+        long timeout = 4000;
+        try (FrameQueue owner = new FrameQueue(directory, timeout);
+             FrameQueue other = new FrameQueue(directory, timeout)) {
+            assertTrue(owner.claim(0));
+            Path lock = directory.toPath().resolve("frame00000.lock");
+            Files.setLastModifiedTime(lock, FileTime.fromMillis(System.currentTimeMillis() - 2 * timeout));
+            // Touched once per quarter of the timeout
+            long deadline = System.currentTimeMillis() + timeout;
+            while (System.currentTimeMillis() - Files.getLastModifiedTime(lock).toMillis() > timeout) {
+                assertTrue(System.currentTimeMillis() < deadline, "Lock was not refreshed");
+                Thread.sleep(50);
+            }
+            assertFalse(other.claim(0));
+        }
+    }
+
+    @Test
+    void completeMarksDone() throws Exception {
+        try (FrameQueue queue = new FrameQueue(directory, TIMEOUT)) {
+            assertTrue(queue.claim(0));
+            queue.complete(0);
+            assertTrue(queue.isDone(0));
+            assertFalse(Files.exists(directory.toPath().resolve("frame00000.lock")));
+            assertFalse(queue.claim(0));
+        }
+    }
+
+    @Test
+    void releaseOnFailure() throws Exception {
+        try (FrameQueue first = new FrameQueue(directory, TIMEOUT);
+             FrameQueue second = new FrameQueue(directory, TIMEOUT)) {
+            assertTrue(first.claim(0));
+            first.release(0);
+            assertFalse(first.isDone(0));
+            assertTrue(second.claim(0));
+        }
+    }
+
+    @Test
+    void closeReleasesUnfinishedFrames() throws Exception {
+        FrameQueue queue = new FrameQueue(directory, TIMEOUT);
+        assertTrue(queue.claim(0));
+        assertTrue(queue.claim(1));
+        queue.complete(0);
+        queue.close();
+
+        assertTrue(queue.isDone(0));
+        assertFalse(queue.isDone(1));
+        assertFalse(Files.exists(directory.toPath().resolve("frame00001.lock")));
+        try (FrameQueue next = new FrameQueue(directory, TIMEOUT)) {
+            assertFalse(next.claim(0));
+            assertTrue(next.claim(1));
+        }
+    }
+
+    private Path lock(int frame, String worker, long modified) throws Exception {
+        Path lock = directory.toPath().resolve(String.format("frame%05d.lock", frame));
+        Files.write(lock, worker.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(lock, FileTime.fromMillis(modified));
+        return lock;
+    }
+}
@@ -0,0 +1,150 @@
+package dev.thatredox.chunky.animate.standalone;
+
+import org.junit.jupiter.api.Test;
+import se.llbit.json.JsonMember;
+import se.llbit.json.JsonObject;
+import se.llbit.json.JsonParser;
+import se.llbit.json.JsonValue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Compares {@link JsonPathFilter} against a full parse of the same document followed by filtering the parsed tree.
+ */
+class JsonPathFilterTest {
+    private static final Collection<String> PATHS = Arrays.asList(
+            "camera.position", "camera.orientation.yaw", "sun.altitude", "sun.color", "name", "fog\"Density");
+
+    @Test
+    void escapedKeys() throws Exception {
+        check("{\"ca\\u006dera\": {\"position\": {\"x\": 1, \"y\": -2.5e3, \"z\": 0},"
+                + " \"orien\\tation\": {\"yaw\": 1}, \"orientation\": {\"pitch\": 2, \"yaw\": -0.25}},"
+                + " \"fog\\\"Density\": 0.125, \"n\\\\ame\": \"skipped\", \"name\": \"a \\\"quoted\\\" \\\\ name\"}");
+    }
+
+    @Test
+    void nestedArrays() throws Exception {
+        check("{\"chunkList\": [[0, 1], [[2, [3, {\"k\": \"]}[{\\\"\"}]]], {\"sun\": {\"altitude\": 9}}],"
+                + " \"sun\": {\"color\": [1.0, [0.5, [0.25, \"}]\"]], {\"r\": []}], \"azimuth\": [[], {}]},"
+                + " \"entities\": [{\"camera\": {\"position\": 7}}], \"camera\": {\"position\": [[1], [2, [3]]]}}");
+    }
+
+    @Test
+    void emptyAndUnmatched() throws Exception {
+        check("{}");
+        check("{\"camera\": {}, \"sun\": {\"azimuth\": 1}, \"other\": null}");
+        check("{\"camera\": 3, \"sun\": [1, 2], \"name\": null, \"sun\": {\"altitude\": true}}");
+    }
+
+    /**
+     * Move a padding value through the scanner's 64 KiB buffer, so that keys, escapes, skipped values and captured
+     * values all straddle a buffer boundary at some padding length.
+     */
+    @Test
+    void bufferBoundaries() throws Exception {
+        // The tail has escapes and raw multi-byte characters in keys and in captured and skipped values
+        String tail = "\"sk\\u0069p\": [1, [2, \"\\\"]\u00e9\"], {\"a\": {}}], \"camera\": {\"orientation\": "
+                + "{\"yaw\": -1.5e-3}, \"position\": {\"x\": 12345.678, \"n\\u00e9\": \"\\u00e9\\\\\"}}, "
+                + "\"\u00e9\": 1, \"name\": \"\u00e9nd\"}";
+        String head = "{\"padding\": \"";
+        int tailBytes = tail.getBytes(StandardCharsets.UTF_8).length;
+        int first = (1 << 16) - head.length() - tailBytes - 8;
+        for (int padding = first; padding < (1 << 16); padding++) {
+            StringBuilder doc = new StringBuilder(head);
+            for (int i = 0; i < padding; i++) {
+                doc.append('x');
+            }
+            doc.append("\", ").append(tail);
+            check(doc.toString());
+        }
+    }
+
+    @Test
+    void largeCapturedValue() throws Exception {
+        StringBuilder doc = new StringBuilder("{\"sun\": {\"color\": [");
+        for (int i = 0; i < 50000; i++) {
+            if (i > 0) doc.append(", ");
+            doc.append("[").append(i).append(", \"v").append(i).append("\"]");
+        }
+        doc.append("]}, \"name\": \"after\"}");
+        check(doc.toString());
+    }
+
+    @Test
+    void malformed() {
+        JsonPathFilter filter = new JsonPathFilter(PATHS);
+        for (String doc : new String[]{"", "[]", "{\"a\": 1", "{\"a\" 1}", "{\"a\": \"1}", "{\"a\": 1} 2",
+                "{\"camera\": {\"position\": }}"}) {
+            assertThrows(IOException.class, () -> filter.filter(stream(doc)), doc);
+        }
+    }
+
+    private static void check(String doc) throws Exception {
+        JsonObject parsed;
+        try (JsonParser parser = new JsonParser(stream(doc))) {
+            parsed = parser.parse().asObject();
+        }
+        JsonObject expected = filterParsed(parsed, "");
+        Map<String, String> expectedMatches = new LinkedHashMap<>();
+        collectMatches(parsed, "", expectedMatches);
+
+        JsonPathFilter filter = new JsonPathFilter(PATHS);
+        JsonObject filtered = filter.filter(stream(doc));
+        assertEquals(expected == null ? "{}" : expected.toCompactString(), filtered.toCompactString());
+
+        Map<String, String> matches = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonValue> match : filter.match(stream(doc)).entrySet()) {
+            matches.put(match.getKey(), match.getValue().toCompactString());
+        }
+        assertEquals(expectedMatches, matches);
+    }
+
+    /**
+     * Reference filter on a parsed tree. A matched path keeps its whole value and objects without matches are dropped.
+     */
+    private static JsonObject filterParsed(JsonObject object, String prefix) {
+        JsonObject result = null;
+        for (JsonMember member : object) {
+            String path = prefix + member.getName();
+            JsonValue value = null;
+            if (PATHS.contains(path)) {
+                value = member.getValue();
+            } else if (member.getValue().isObject() && hasPathBelow(path)) {
+                value = filterParsed(member.getValue().asObject(), path + ".");
+            }
+            if (value != null) {
+                if (result == null) result = new JsonObject();
+                result.set(member.getName(), value);
+            }
+        }
+        return result;
+    }
+
+    private static void collectMatches(JsonObject object, String prefix, Map<String, String> matches) {
+        for (JsonMember member : object) {
+            String path = prefix + member.getName();
+            if (PATHS.contains(path)) {
+                matches.put(path, member.getValue().toCompactString());
+            } else if (member.getValue().isObject() && hasPathBelow(path)) {
+                collectMatches(member.getValue().asObject(), path + ".", matches);
+            }
+        }
+    }
+
+    private static boolean hasPathBelow(String path) {
+        return PATHS.stream().anyMatch(p -> p.startsWith(path + "."));
+    }
+
+    private static ByteArrayInputStream stream(String doc) {
+        return new ByteArrayInputStream(doc.getBytes(StandardCharsets.UTF_8));
+    }
+}